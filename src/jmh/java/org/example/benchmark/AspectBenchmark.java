@@ -0,0 +1,85 @@
+package org.example.benchmark;
+
+import org.example.model.Book;
+import org.example.service.BookService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость аспектов: попадание и промах CashingAspect, а также вызов через прокси
+ * с LoggingAspect и CashingAspect по сравнению с прямым вызовом сервиса.
+ * При {@code aspects=false} аспекты отключены свойствами, и сервис получается без прокси.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AspectBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean aspects;
+
+    private BenchmarkContext context;
+    private BookService proxied;
+    private BookService direct;
+    private String title;
+    private long missCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        for (String property : new String[]{"tracing.enabled", "cache.enabled", "metrics.enabled"}) {
+            System.setProperty(property, Boolean.toString(aspects));
+        }
+        context = new BenchmarkContext(rows, true);
+        proxied = context.bean(BookService.class);
+        direct = context.target(BookService.class);
+        title = BookCsvGenerator.firstTitle(rows);
+        proxied.findBooksByName(title);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Результат уже в кеше: логирование, поиск в кеше, без обращения к сервису.
+     */
+    @Benchmark
+    public List<Book> cacheHit() {
+        return proxied.findBooksByName(title);
+    }
+
+    /**
+     * Каждый раз новое название: промах кеша, поиск в сервисе и запись результата в кеш.
+     */
+    @Benchmark
+    public List<Book> cacheMiss() {
+        return proxied.findBooksByName("нет такой книги " + missCounter++);
+    }
+
+    /**
+     * Тот же поиск по отсутствующему названию без прокси, для сравнения с {@link #cacheMiss()}.
+     */
+    @Benchmark
+    public List<Book> directMiss() {
+        return direct.findBooksByName("нет такой книги " + missCounter++);
+    }
+
+    /**
+     * Дешевый метод сервиса через прокси: видна чистая стоимость LoggingAspect.
+     */
+    @Benchmark
+    public List<Book> pageProxied() {
+        return proxied.readBooksPage(0, 10);
+    }
+
+    @Benchmark
+    public List<Book> pageDirect() {
+        return direct.readBooksPage(0, 10);
+    }
+}
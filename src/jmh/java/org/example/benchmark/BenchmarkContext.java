@@ -0,0 +1,63 @@
+package org.example.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.example.config.AppConfig;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.Advised;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Контекст Spring для бенчмарков на отдельной копии каталога.
+ * Вывод сервисов в консоль отключается, а уровень логирования поднимается до WARN,
+ * чтобы измерялась стоимость аспектов, а не печать в консоль.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final AnnotationConfigApplicationContext context;
+    private final PrintStream originalOut;
+
+    public BenchmarkContext(int rows, boolean journal) throws IOException {
+        this(BookCsvGenerator.prepare(rows), journal);
+    }
+
+    /**
+     * Создает контекст на уже подготовленной копии каталога.
+     */
+    public BenchmarkContext(Path file, boolean journal) {
+        System.setProperty("storage.file", file.toString());
+        System.setProperty("storage.journal.enabled", Boolean.toString(journal));
+        System.setProperty("storage.journal.compactionIntervalSeconds", "3600");
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        context = new AnnotationConfigApplicationContext(AppConfig.class);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Возвращает исходный объект бина без AOP прокси, чтобы измерить вызов без аспектов.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T target(Class<T> type) throws Exception {
+        Object bean = context.getBean(type);
+        while (bean instanceof Advised advised) {
+            bean = advised.getTargetSource().getTarget();
+        }
+        return (T) bean;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        System.setOut(originalOut);
+    }
+}
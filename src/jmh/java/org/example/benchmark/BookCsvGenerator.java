@@ -0,0 +1,108 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.example.model.Book;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Генератор синтетических books.csv для бенчмарков.
+ * Файлы создаются один раз в {@code java.io.tmpdir/itexus-books-bench} и копируются в рабочий каталог бенчмарка,
+ * потому что бенчмарки изменяют каталог.
+ */
+public final class BookCsvGenerator {
+
+    private static final String[] TITLE_WORDS = {
+            "Война", "мир", "Преступление", "наказание", "Мастер", "Маргарита", "Идиот", "Братья",
+            "Карамазовы", "Отцы", "дети", "Анна", "Каренина", "Мертвые", "души", "Тихий", "Дон",
+            "The", "Great", "Gatsby", "Old", "Man", "and", "Sea", "Brave", "New", "World"};
+    private static final String[] AUTHORS = {
+            "Фёдор Достоевский", "Лев Толстой", "Михаил Булгаков", "Николай Гоголь", "Михаил Шолохов",
+            "Иван Тургенев", "Антон Чехов", "F. Scott Fitzgerald", "Ernest Hemingway", "Aldous Huxley"};
+
+    private BookCsvGenerator() {
+    }
+
+    /**
+     * Возвращает рабочий каталог с копией books.csv заданного размера.
+     *
+     * @param rows количество книг.
+     * @return путь к books.csv в новом временном каталоге.
+     */
+    public static Path prepare(int rows) throws IOException {
+        Path template = Path.of(System.getProperty("java.io.tmpdir"), "itexus-books-bench", "books-" + rows + ".csv");
+        if (!Files.exists(template)) {
+            Files.createDirectories(template.getParent());
+            Path temp = template.resolveSibling(template.getFileName() + ".tmp");
+            generate(rows, temp);
+            Files.move(temp, template, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path workDir = Files.createTempDirectory("itexus-books-bench-");
+        Path file = workDir.resolve("books.csv");
+        Files.copy(template, file);
+        return file;
+    }
+
+    /**
+     * Записывает CSV файл с заданным количеством книг в схеме репозитория.
+     * ID идут подряд с 1, названия и авторы повторяются, как в реальных каталогах.
+     */
+    public static void generate(int rows, Path target) throws IOException {
+        CsvSchema schema = CsvSchema.builder()
+                .addColumn("id")
+                .addColumn("title")
+                .addColumn("author")
+                .addColumn("description")
+                .setUseHeader(true)
+                .setQuoteChar('"')
+                .build();
+        Random random = new Random(rows);
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
+             SequenceWriter sequence = new CsvMapper().writer(schema).writeValues(writer)) {
+            for (int id = 1; id <= rows; id++) {
+                sequence.write(new Book(id, title(random), AUTHORS[random.nextInt(AUTHORS.length)],
+                        "Описание книги " + id + ", издание " + (1 + random.nextInt(20)) + "."));
+            }
+        }
+    }
+
+    /**
+     * Возвращает название первой книги сгенерированного каталога заданного размера.
+     */
+    public static String firstTitle(int rows) {
+        return title(new Random(rows));
+    }
+
+    private static String title(Random random) {
+        int words = 1 + random.nextInt(3);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                title.append(' ');
+            }
+            title.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    /**
+     * Создает файлы на 1 тыс., 100 тыс. и 1 млн книг в указанном каталоге.
+     *
+     * @param args каталог для файлов, по умолчанию текущий.
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Path.of(args.length > 0 ? args[0] : ".");
+        Files.createDirectories(dir);
+        for (int rows : new int[]{1_000, 100_000, 1_000_000}) {
+            generate(rows, dir.resolve("books-" + rows + ".csv"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.benchmark;
+
+import org.example.model.Book;
+import org.example.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пропускная способность изменений из нескольких потоков: каждый поток меняет свои книги,
+ * поэтому потоки не конкурируют за блокировки ID, а только за короткую запись в журнал. Запуск с разным числом потоков: {@code -t 1}, {@code -t 4}.
+ * При {@code sync=batch} записи потоков сбрасываются на диск общим fsync на пачку,
+ * при {@code sync=record} - отдельным fsync на каждую запись.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class ConcurrentWriteBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"none", "batch", "record"})
+    public String sync;
+
+    private BenchmarkContext context;
+    private BookRepository repository;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class ThreadIds {
+        int first;
+        int next;
+        int count;
+
+        @Setup(Level.Trial)
+        public void setUp(ConcurrentWriteBenchmark benchmark) {
+            count = benchmark.rows / 64;
+            first = 1 + (benchmark.threadCounter.getAndIncrement() % 64) * count;
+        }
+
+        int nextId() {
+            return first + (next++ % count);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty("storage.write.sync", sync);
+        context = new BenchmarkContext(rows, true);
+        repository = context.bean(BookRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty("storage.write.sync");
+    }
+
+    @Benchmark
+    public Book editDisjointBooks(ThreadIds ids) {
+        int id = ids.nextId();
+        return repository.editBook(new Book(id, "Измененная книга " + id, "Автор", "Описание"));
+    }
+
+    /**
+     * Чтение по ID из тех же потоков для сравнения: оно не берет блокировок.
+     */
+    @Benchmark
+    public Book findBookById(ThreadIds ids) {
+        return repository.findBookById(ids.nextId());
+    }
+}
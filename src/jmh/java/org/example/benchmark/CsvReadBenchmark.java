@@ -0,0 +1,76 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.example.model.Book;
+import org.example.repository.BinaryBookSnapshot;
+import org.example.repository.MappedCsvReader;
+import org.example.repository.ParallelCsvImporter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полная загрузка каталога с диска разными способами: CsvMapper, отображение в память,
+ * параллельный разбор и двоичный снимок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CsvReadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private Path csv;
+    private Path binary;
+    private final CsvMapper mapper = new CsvMapper();
+    private final CsvSchema schema = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("title")
+            .addColumn("author")
+            .addColumn("description")
+            .setUseHeader(true)
+            .setQuoteChar('"')
+            .build();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csv = BookCsvGenerator.prepare(rows);
+        binary = csv.resolveSibling("books.bin");
+        BinaryBookSnapshot.write(new ParallelCsvImporter(1).importFile(csv).getBooks(), binary);
+    }
+
+    @Benchmark
+    public void jackson(Blackhole blackhole) throws IOException {
+        try (MappingIterator<Book> books = mapper.readerFor(Book.class).with(schema).readValues(csv.toFile())) {
+            while (books.hasNext()) {
+                blackhole.consume(books.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public long mappedIdsOnly() throws IOException {
+        long[] sum = {0};
+        try (MappedCsvReader reader = new MappedCsvReader(csv)) {
+            reader.forEach(true, record -> sum[0] += record.getInt(0));
+        }
+        return sum[0];
+    }
+
+    @Benchmark
+    public List<Book> parallelImport() throws IOException {
+        return new ParallelCsvImporter().importFile(csv).getBooks();
+    }
+
+    @Benchmark
+    public List<Book> binarySnapshot() throws IOException {
+        return BinaryBookSnapshot.read(binary);
+    }
+}
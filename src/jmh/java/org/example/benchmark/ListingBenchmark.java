@@ -0,0 +1,44 @@
+package org.example.benchmark;
+
+import org.example.model.Book;
+import org.example.repository.BookRepository;
+import org.example.utils.BookUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вывод списка книг через {@link BookUtils} в отключенный System.out:
+ * измеряется форматирование и подписи полей, а не скорость терминала.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private BenchmarkContext context;
+    private BookUtils bookUtils;
+    private List<Book> books;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new BenchmarkContext(rows, true);
+        bookUtils = context.bean(BookUtils.class);
+        books = context.bean(BookRepository.class).readBooks();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void listBooks() {
+        bookUtils.listBooks(books, Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.benchmark;
+
+import org.example.model.Book;
+import org.example.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции {@link BookRepository}: чтение каталога из памяти, добавление книги
+ * и изменение книги, которое без журнала переписывает весь файл.
+ * Параметр {@code engine} сравнивает хранение книг в куче и вне кучи ({@code storage.engine}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean journal;
+
+    @Param({"heap", "offheap"})
+    public String engine;
+
+    private BenchmarkContext context;
+    private BookRepository repository;
+    private int nextId;
+    private int editId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty("storage.engine", engine);
+        context = new BenchmarkContext(rows, journal);
+        repository = context.bean(BookRepository.class);
+        nextId = rows + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.clearProperty("storage.engine");
+    }
+
+    @Benchmark
+    public List<Book> readBooks() {
+        return repository.readBooks();
+    }
+
+    @Benchmark
+    public Book findBookById() {
+        return repository.findBookById(1 + (editId++ % rows));
+    }
+
+    @Benchmark
+    public Book addBook() {
+        int id = nextId++;
+        return repository.addBook(new Book(id, "Новая книга " + id, "Автор", "Описание"));
+    }
+
+    /**
+     * Изменение книги: запись в журнал или полная перезапись файла через writeBooks.
+     */
+    @Benchmark
+    public void editBook() {
+        int id = 1 + (editId++ % rows);
+        repository.editBook(new Book(id, "Измененная книга " + id, "Автор", "Описание"));
+    }
+}
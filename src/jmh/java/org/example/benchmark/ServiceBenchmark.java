@@ -0,0 +1,71 @@
+package org.example.benchmark;
+
+import org.example.model.Book;
+import org.example.service.BookService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции {@link BookService} через прокси Spring AOP (оба аспекта: логирование и кеш)
+ * и напрямую на исходном объекте сервиса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkContext context;
+    private BookService proxied;
+    private BookService direct;
+    private String title;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new BenchmarkContext(rows, true);
+        proxied = context.bean(BookService.class);
+        direct = context.target(BookService.class);
+        title = BookCsvGenerator.firstTitle(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Поиск по названию без аспектов: индекс слов и точное сравнение.
+     */
+    @Benchmark
+    public List<Book> findBooksByNameDirect() {
+        return direct.findBooksByName(title);
+    }
+
+    @Benchmark
+    public void editBookProxied() {
+        int id = 1 + (nextId++ % rows);
+        proxied.editBook(new Book(id, "Измененная книга " + id, "Автор", "Описание"), Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public void editBookDirect() {
+        int id = 1 + (nextId++ % rows);
+        direct.editBook(new Book(id, "Измененная книга " + id, "Автор", "Описание"), Locale.ENGLISH);
+    }
+
+    /**
+     * Удаление книги и ее повторное создание, чтобы размер каталога не менялся.
+     */
+    @Benchmark
+    public void deleteAndCreateBook() {
+        int id = 1 + (nextId++ % rows);
+        proxied.deleteBook(id, Locale.ENGLISH);
+        proxied.createBook(new Book(id, "Книга " + id, "Автор", "Описание"), Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.benchmark;
+
+import org.example.index.BookSortedIndex;
+import org.example.model.Book;
+import org.example.service.BookService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Запросы по диапазону ID и по автору через {@link BookSortedIndex} и полным обходом каталога, как без индекса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortedIndexBenchmark {
+
+    private static final int LIMIT = 100;
+    private static final String AUTHOR = "лев толстой";
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkContext context;
+    private BookService service;
+    private int fromId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new BenchmarkContext(rows, true);
+        service = context.target(BookService.class);
+        fromId = rows / 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> idRangeIndexed() {
+        return service.findBooksByIdRange(fromId, fromId + LIMIT - 1, LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> idRangeScan() {
+        try (Stream<Book> books = service.streamBooks()) {
+            return books.filter(book -> book.getId() >= fromId && book.getId() < fromId + LIMIT)
+                    .sorted(Comparator.comparingInt(Book::getId))
+                    .toList();
+        }
+    }
+
+    @Benchmark
+    public List<Book> authorIndexed() {
+        return service.findBooksByAuthor(AUTHOR, LIMIT);
+    }
+
+    /**
+     * Первые книги автора по ID: без индекса нужно найти и отсортировать все его книги.
+     */
+    @Benchmark
+    public List<Book> authorScan() {
+        try (Stream<Book> books = service.streamBooks()) {
+            return books.filter(book -> book.getAuthor().equalsIgnoreCase(AUTHOR))
+                    .sorted(Comparator.comparingInt(Book::getId))
+                    .limit(LIMIT)
+                    .toList();
+        }
+    }
+
+    @Benchmark
+    public List<Book> sortedByAuthor() {
+        return service.readBooksSorted(BookSortedIndex.SortOrder.AUTHOR, LIMIT);
+    }
+}
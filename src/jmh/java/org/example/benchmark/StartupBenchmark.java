@@ -0,0 +1,53 @@
+package org.example.benchmark;
+
+import org.example.controller.MainMenu;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время от создания контекста Spring до готового к показу меню в только что запущенной JVM.
+ * Каждое сочетание параметров выполняется в отдельных JVM, поэтому {@code spring.index.ignore}
+ * (сканирование пакетов вместо списка компонентов, составленного при компиляции) задается до загрузки Spring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class StartupBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean lazy;
+
+    @Param({"true", "false"})
+    public boolean index;
+
+    @Param({"true", "false"})
+    public boolean aspects;
+
+    private Path file;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        System.setProperty("startup.lazy", Boolean.toString(lazy));
+        System.setProperty("spring.index.ignore", Boolean.toString(!index));
+        for (String property : new String[]{"tracing.enabled", "cache.enabled", "metrics.enabled"}) {
+            System.setProperty(property, Boolean.toString(aspects));
+        }
+        file = BookCsvGenerator.prepare(rows);
+    }
+
+    @Benchmark
+    public MainMenu firstMenu() {
+        try (BenchmarkContext context = new BenchmarkContext(file, true)) {
+            return context.bean(MainMenu.class);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.benchmark;
+
+import org.example.service.BookTransferService;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка каталога через {@link BookTransferService} в CSV и JSON Lines, со сжатием gzip и без.
+ * Файл выгрузки пишется во временный каталог и перезаписывается в каждой итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"csv", "csv.gz", "jsonl", "jsonl.gz"})
+    public String extension;
+
+    private BenchmarkContext context;
+    private BookTransferService transferService;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new BenchmarkContext(rows, true);
+        transferService = context.bean(BookTransferService.class);
+        target = Files.createTempDirectory("books-export").resolve("books." + extension);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public long export() {
+        return transferService.export(target, BookTransferService.matching(null, null)).getBytes();
+    }
+}
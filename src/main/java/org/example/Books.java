@@ -1,19 +1,34 @@
 package org.example;
 
 import org.example.config.AppConfig;
+import org.example.controller.CommandServer;
 import org.example.controller.MainMenu;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 /**
  * Главный класс приложения для управления книгами.
  * Инициализирует контекст Spring и запускает главное меню.
+ * С аргументом {@code --serve} вместо меню запускается {@link CommandServer} на TCP порту,
+ * а с {@code --pipe} команды сервера читаются из стандартного ввода.
  */
 public class Books {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "";
         try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class)) {
-            MainMenu mainMenu = context.getBean(MainMenu.class);
-            mainMenu.menu();
+            switch (mode) {
+                case "--serve" -> {
+                    CommandServer server = context.getBean(CommandServer.class);
+                    context.registerShutdownHook();
+                    server.start();
+                    server.awaitTermination();
+                }
+                case "--pipe" -> context.getBean(CommandServer.class).servePipe();
+                default -> {
+                    MainMenu mainMenu = context.getBean(MainMenu.class);
+                    mainMenu.menu();
+                }
+            }
         }
     }
 }
\ No newline at end of file
@@ -1,28 +1,85 @@
 package org.example.aop;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.*;
+import org.example.config.ConditionalOnProperty;
+import org.example.metrics.BookMetrics;
 import org.example.model.Book;
+import org.example.repository.BookChangeListener;
+import org.example.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Класс для кеширования данных о книге, чтоб не читать ее повторно с диска
  * Запись в кеш и выдача из него происходят, когда книгу ищут по названию.
- * Кеш очищается при изменении данных по книгам.
+ * Кеш потокобезопасный, ограничен по числу записей или по суммарному числу книг (вытеснение W-TinyLFU),
+ * может хранить пустые результаты и ограничивать время жизни записей.
+ * При изменении книги из кеша удаляются только результаты для ее старого и нового названия.
+ * Аспект уведомляется после индексов ({@link BookChangeListener#CACHE_PHASE}), поэтому поиск, начатый
+ * до обновления индекса, либо не попадет в кеш, либо будет стерт.
+ * При {@code cache.enabled=false} аспект не создается, и поиск всегда выполняется сервисом.
  */
 @Aspect
 @Component
+@ConditionalOnProperty("cache.enabled")
 @Slf4j
-public class CashingAspect {
+@RequiredArgsConstructor
+public class CashingAspect implements BookChangeListener {
 
-    private static final Map<String, List<Book>> cache = new HashMap<>();
+    private final BookRepository bookRepository;
+    private final BookMetrics bookMetrics;
+
+    @Value("${cache.maximumSize:10000}")
+    private long maximumSize;
+
+    @Value("${cache.maximumWeight:0}")
+    private long maximumWeight;
+
+    @Value("${cache.expireAfterWriteSeconds:0}")
+    private long expireAfterWriteSeconds;
+
+    @Value("${cache.negative:true}")
+    private boolean negativeCaching;
+
+    private Cache<String, List<Book>> cache;
+
+    /**
+     * Поколение инвалидаций. Обработчики изменений увеличивают его до того, как стирают записи,
+     * и уже после обновления индексов. Если оно изменилось с начала поиска, результат мог устареть
+     * и в кеш не записывается.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (maximumWeight > 0) {
+            builder.maximumWeight(maximumWeight)
+                    .weigher((String key, List<Book> books) -> books.size() + 1);
+        } else {
+            builder.maximumSize(maximumSize);
+        }
+        if (expireAfterWriteSeconds > 0) {
+            builder.expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds));
+        }
+        cache = builder.build();
+        bookRepository.addChangeListener(this);
+    }
 
     @Pointcut("execution(* org.example.service.BookService.findBooksByName(..))")
     public void findBooksPointcut() {
@@ -39,21 +96,38 @@ public class CashingAspect {
      * @throws Throwable если метод выбрасывает исключение
      */
     @Around("findBooksPointcut()")
+    @SuppressWarnings("unchecked")
     public Object cacheAroundService(ProceedingJoinPoint joinPoint) throws Throwable {
 
         Object[] args = joinPoint.getArgs();
         String bookName = (String) args[0];
+        String key = key(bookName);
 
-        if (cache.containsKey(bookName)) {
+        // файл могли изменить извне, а без наблюдателя это видно только при обращении
+        bookRepository.refreshIfModified();
+        List<Book> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            bookMetrics.recordCacheHit();
             log.info("Книга {} найдена в кэше", bookName);
-            return cache.get(bookName);
+            return cached;
         }
+        bookMetrics.recordCacheMiss();
 
+        long invalidationsBefore = invalidations.get();
         Object result = joinPoint.proceed();
 
-        if (result instanceof List<?> resultList) {
-            if (!resultList.isEmpty() && resultList.get(0) instanceof Book) {
-                cache.put(bookName, (List<Book>) result);
+        if (result instanceof List<?> resultList && (negativeCaching || !resultList.isEmpty())) {
+            // поколение проверяется под блокировкой ключа: инвалидация того же ключа ждет конца записи,
+            // а счетчик увеличивается до нее, поэтому результат, устаревший во время поиска, в кеш не попадет
+            boolean[] stored = new boolean[1];
+            cache.asMap().compute(key, (k, current) -> {
+                if (invalidations.get() != invalidationsBefore) {
+                    return current;
+                }
+                stored[0] = true;
+                return (List<Book>) resultList;
+            });
+            if (stored[0]) {
                 log.info("Книга добавлена в кэш: {}", bookName);
             }
         }
@@ -62,14 +136,83 @@ public class CashingAspect {
     }
 
     /**
-     * Стирает информацию из кеша в случае изменения, добавления или удаления книги.
+     * Кеш стирает записи после того, как индексы уже применили изменение.
+     */
+    @Override
+    public int phase() {
+        return CACHE_PHASE;
+    }
+
+    /**
+     * Возвращает счетчики попаданий, промахов и вытеснений кеша.
      */
-    @AfterReturning(
-            "execution(* org.example.service.BookService.createBook(..)) || " +
-            "execution (* org.example.service.BookService.editBook(..)) ||" +
-            "execution(* org.example.service.BookService.deleteBook(..))")
-    public void clearCacheAdvice() {
-        log.info("Стираю кеш");
-        cache.clear();
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Возвращает текущее число записей в кеше.
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public void onReload(List<Book> books) {
+        invalidations.incrementAndGet();
+        if (cache != null) {
+            log.info("Стираю кеш");
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Стирает из кеша результаты для старого и нового названия книги.
+     */
+    @Override
+    public void onUpsert(Book previous, Book current) {
+        invalidations.incrementAndGet();
+        if (previous != null) {
+            invalidateTitle(previous.getTitle());
+        }
+        invalidateTitle(current.getTitle());
+    }
+
+    /**
+     * Стирает из кеша результаты для названия удаленной книги.
+     */
+    @Override
+    public void onDelete(Book removed) {
+        invalidations.incrementAndGet();
+        invalidateTitle(removed.getTitle());
+    }
+
+    /**
+     * Стирает из кеша результаты для всех названий пакета одним вызовом.
+     */
+    @Override
+    public void onBatch(List<Book> previous, List<Book> current) {
+        invalidations.incrementAndGet();
+        Set<String> keys = new HashSet<>();
+        for (List<Book> books : List.of(previous, current)) {
+            for (Book book : books) {
+                if (book != null && book.getTitle() != null) {
+                    keys.add(key(book.getTitle()));
+                }
+            }
+        }
+        log.info("Стираю из кеша {} названий", keys.size());
+        cache.invalidateAll(keys);
+    }
+
+    private void invalidateTitle(String title) {
+        if (title != null) {
+            log.info("Стираю из кеша: {}", title);
+            cache.invalidate(key(title));
+        }
+    }
+
+    private static String key(String bookName) {
+        return bookName == null ? "" : bookName.toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
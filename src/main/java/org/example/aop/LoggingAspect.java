@@ -1,28 +1,77 @@
 package org.example.aop;
 
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.example.config.ConditionalOnProperty;
+import org.example.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.BaseStream;
+
 /**
  * Класс для логирования
+ * <p>
+ * Вызовы методов сервиса логируются в режиме {@code tracing.mode}:
+ * {@code off} - только исключения, {@code summary} - аргументы и результат кратко
+ * (например {@code List<Book>[size=250000]}), {@code full} - дополнительно первые элементы коллекций и поля книг.
+ * Описание значения ограничено {@code tracing.maxLength} символами, поэтому его стоимость не зависит от размера каталога.
+ * Логируется один вызов из {@code tracing.sample}, для метода можно задать свою частоту:
+ * {@code tracing.sample.BookService.readBooks=100}. Если уровень INFO выключен или вызов не попал в выборку,
+ * ничего не форматируется. При {@code tracing.enabled=false} аспект не создается, а вызовы сервиса
+ * не проходят через него, в том числе исключения не логируются.
  */
 @Aspect
 @Component
+@ConditionalOnProperty("tracing.enabled")
 @Slf4j
+@RequiredArgsConstructor
 public class LoggingAspect {
 
+    private final Environment environment;
+
+    @Value("${tracing.mode:summary}")
+    private String mode;
+
+    @Value("${tracing.sample:1}")
+    private int defaultSample;
+
+    @Value("${tracing.maxLength:200}")
+    private int maxLength;
+
+    private TraceMode traceMode;
+
+    private final Map<Method, MethodTrace> traces = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        traceMode = TraceMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+
     @Pointcut("within(org.example.service..*)")
     public void servicePointcut() {
     }
 
     /**
-     * Логирует параметры вызова и выходное значение методов в пакете org.example.service.
+     * Логирует параметры вызова, выходное значение и время выполнения методов в пакете org.example.service.
      *
      * @param joinPoint объект, представляющий точку соединения (вызов метода)
      * @return результат выполнения метода
@@ -31,28 +80,164 @@ public class LoggingAspect {
     @Around("servicePointcut()")
     public Object logAroundService(ProceedingJoinPoint joinPoint) throws Throwable {
 
-        String methodName = joinPoint.getSignature().toShortString();
-        Object[] args = joinPoint.getArgs();
-        log.info("Вызов метода: {} с аргументами: {}", methodName, args);
+        MethodTrace trace = null;
+        if (traceMode != TraceMode.OFF && log.isInfoEnabled()) {
+            trace = traceFor(joinPoint);
+            if (!trace.sample()) {
+                trace = null;
+            }
+        }
+        long started = 0;
+        if (trace != null) {
+            log.info("Вызов метода: {} с аргументами: {}", trace.name, describeArgs(trace, joinPoint.getArgs()));
+            started = System.nanoTime();
+        }
 
         Object result;
         try {
             result = joinPoint.proceed();
         } catch (Throwable throwable) {
-            log.error("Исключение в методе: {} с аргументами: {}", methodName, args, throwable);
+            if (log.isErrorEnabled()) {
+                MethodTrace failed = traceFor(joinPoint);
+                log.error("Исключение в методе: {} с аргументами: {}",
+                        failed.name, describeArgs(failed, joinPoint.getArgs()), throwable);
+            }
             throw throwable;
         }
 
-        log.info("Метод {} вернул значение {}", methodName, result);
+        if (trace != null) {
+            long elapsedMicros = (System.nanoTime() - started) / 1000;
+            log.info("Метод {} вернул значение {} за {} мкс",
+                    trace.name, describe(trace.returnType, result), elapsedMicros);
+        }
 
         return result;
     }
 
     /**
-     * Логирует чтение из файла
+     * Логирует чтение книг из репозитория
      */
     @Before("execution(* org.example.repository.BookRepository.readBooks(..))")
     public void logBeforeReadBooks() {
-        log.info("чтение из файла");
+        if (traceMode != TraceMode.OFF) {
+            log.info("чтение книг из хранилища");
+        }
+    }
+
+    private MethodTrace traceFor(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return traces.computeIfAbsent(method, this::createTrace);
+    }
+
+    private MethodTrace createTrace(Method method) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        int sample = environment.getProperty("tracing.sample." + name, Integer.class, defaultSample);
+        Type[] parameters = method.getGenericParameterTypes();
+        String[] parameterTypes = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameterTypes[i] = shortTypeName(parameters[i]);
+        }
+        return new MethodTrace(name + "(..)", sample, parameterTypes, shortTypeName(method.getGenericReturnType()));
+    }
+
+    private String describeArgs(MethodTrace trace, Object[] args) {
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            String type = i < trace.parameterTypes.length ? trace.parameterTypes[i] : "Object";
+            out.append(describe(type, args[i]));
+        }
+        return out.append(']').toString();
+    }
+
+    /**
+     * Возвращает краткое описание значения, не обходя коллекции и не вызывая toString больших объектов.
+     */
+    private String describe(String type, Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Collection<?> collection) {
+            StringBuilder out = new StringBuilder(type).append("[size=").append(collection.size());
+            if (traceMode == TraceMode.FULL && !collection.isEmpty()) {
+                appendElements(out, collection.iterator());
+            }
+            return out.append(']').toString();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return type + "[size=" + map.size() + "]";
+        }
+        if (value.getClass().isArray()) {
+            return type + "[length=" + Array.getLength(value) + "]";
+        }
+        if (value instanceof BaseStream<?, ?>) {
+            return type;
+        }
+        if (value instanceof Book book) {
+            if (traceMode == TraceMode.FULL) {
+                return "Book[id=" + book.getId() + ", title=" + quote(book.getTitle())
+                        + ", author=" + quote(book.getAuthor()) + "]";
+            }
+            return "Book[id=" + book.getId() + "]";
+        }
+        if (value instanceof CharSequence text) {
+            return quote(text);
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?> || value instanceof Locale) {
+            return String.valueOf(value);
+        }
+        return type;
+    }
+
+    private void appendElements(StringBuilder out, Iterator<?> elements) {
+        out.append(':');
+        int start = out.length();
+        while (elements.hasNext()) {
+            if (out.length() - start >= maxLength) {
+                out.append(" ...");
+                return;
+            }
+            Object element = elements.next();
+            out.append(' ').append(describe(element == null ? "null" : element.getClass().getSimpleName(), element));
+        }
+    }
+
+    private String quote(CharSequence text) {
+        if (text == null) {
+            return "null";
+        }
+        if (text.length() > maxLength) {
+            return "\"" + text.subSequence(0, maxLength) + "...\"[length=" + text.length() + "]";
+        }
+        return "\"" + text + "\"";
+    }
+
+    /**
+     * Возвращает имя типа без пакетов, например {@code List<Book>}.
+     */
+    private static String shortTypeName(Type type) {
+        return type.getTypeName().replaceAll("[\\w$]+\\.", "");
+    }
+
+    private enum TraceMode {
+        OFF, SUMMARY, FULL
+    }
+
+    /**
+     * Описание метода, вычисляемое один раз: имя, частота выборки и имена типов.
+     */
+    @RequiredArgsConstructor
+    private static class MethodTrace {
+        private final String name;
+        private final int sample;
+        private final String[] parameterTypes;
+        private final String returnType;
+
+        boolean sample() {
+            return sample <= 1 || ThreadLocalRandom.current().nextInt(sample) == 0;
+        }
     }
 }
@@ -0,0 +1,68 @@
+package org.example.aop;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.example.config.ConditionalOnProperty;
+import org.example.metrics.BookMetrics;
+import org.example.metrics.MethodMetrics;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Класс для измерения времени выполнения публичных методов сервиса и репозитория.
+ * Выполняется раньше остальных аспектов, поэтому время включает кеширование и логирование,
+ * как его видит вызывающий код. Вызовы внутри одного объекта не измеряются.
+ * При {@code metrics.enabled=false} аспект не создается и вызовы не проходят через него.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty("metrics.enabled")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class MetricsAspect {
+
+    private final BookMetrics bookMetrics;
+
+    private final Map<Method, MethodMetrics> metricsByMethod = new ConcurrentHashMap<>();
+
+    @Pointcut("execution(public * org.example.service.BookService.*(..))"
+            + " || execution(public * org.example.repository.BookRepository.*(..))")
+    public void measuredPointcut() {
+    }
+
+    /**
+     * Записывает время выполнения метода и исключение, если оно было.
+     *
+     * @param joinPoint объект, представляющий точку соединения (вызов метода)
+     * @return результат выполнения метода
+     * @throws Throwable если метод выбрасывает исключение
+     */
+    @Around("measuredPointcut()")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodMetrics metrics = metricsFor(joinPoint);
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = joinPoint.proceed();
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(System.nanoTime() - started, failed);
+        }
+    }
+
+    private MethodMetrics metricsFor(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return metricsByMethod.computeIfAbsent(method, m ->
+                bookMetrics.method(m.getDeclaringClass().getSimpleName() + "." + m.getName()));
+    }
+}
@@ -8,17 +8,31 @@ import org.springframework.context.support.ResourceBundleMessageSource;
 /**
  * Класс конфигурации Spring для приложения.
  * Этот класс используется для определения бинов и настройки компонентов приложения.
- *
+ * <p>
+ * Список компонентов составляется при компиляции (spring-context-indexer, файл
+ * {@code META-INF/spring.components}), поэтому при запуске пакеты не сканируются.
+ * Аспекты подключаются по свойствам через {@link ConditionalOnProperty}, а при {@code startup.lazy=true}
+ * бины создаются при первом обращении ({@link LazyInitBeanFactoryPostProcessor}).
  */
 @Configuration
 @ComponentScan(basePackages = "org.example")
-@PropertySource("classpath:/color.properties")
+@PropertySource({
+        "classpath:/color.properties",
+        "classpath:/storage.properties",
+        "classpath:/cache.properties",
+        "classpath:/ui.properties",
+        "classpath:/tracing.properties",
+        "classpath:/metrics.properties",
+        "classpath:/server.properties",
+        "classpath:/startup.properties",
+        "classpath:/transfer.properties"})
 @EnableAspectJAutoProxy
 public class AppConfig {
     /**
      * Создает и настраивает бин {@link MessageSource} для интернационализации.
      * Используется для загрузки сообщений из файлов ресурсов, таких как
      * messages.properties и errors.properties, с поддержкой различных локалей.
+     * Сообщения читаются из него один раз при запуске в {@link org.example.utils.MessageCatalog}.
      *
      * @return настроенный {@link MessageSource}
      */
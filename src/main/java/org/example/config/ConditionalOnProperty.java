@@ -0,0 +1,32 @@
+package org.example.config;
+
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Регистрирует компонент, только если свойство включено ({@code true}).
+ * Свойства читаются из файлов {@link AppConfig} и системных свойств JVM, поэтому, например,
+ * аспект можно отключить через {@code -Dtracing.enabled=false}. Отключенный аспект не создается,
+ * и бины, которые он затрагивал, не оборачиваются прокси.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Conditional(OnPropertyCondition.class)
+public @interface ConditionalOnProperty {
+
+    /**
+     * Имя свойства.
+     */
+    String value();
+
+    /**
+     * Регистрировать ли компонент, если свойство не задано.
+     */
+    boolean matchIfMissing() default true;
+}
@@ -0,0 +1,34 @@
+package org.example.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.stereotype.Component;
+
+/**
+ * Быстрый запуск ({@code startup.lazy=true}): бины приложения создаются при первом обращении,
+ * а не все сразу при создании контекста. В режиме меню не создаются сервер команд и его обработчик,
+ * а в режиме сервера - меню и обработчик ввода. Аспекты создаются при первом вызове метода, к которому применяются.
+ * <p>
+ * Бины с явно заданным {@code @Lazy} и служебные бины Spring не изменяются.
+ */
+@Component
+@ConditionalOnProperty(value = "startup.lazy", matchIfMissing = false)
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.getRole() != BeanDefinition.ROLE_APPLICATION) {
+                continue;
+            }
+            if (definition instanceof AbstractBeanDefinition abstractDefinition && abstractDefinition.getLazyInit() != null) {
+                continue;
+            }
+            definition.setLazyInit(true);
+        }
+    }
+}
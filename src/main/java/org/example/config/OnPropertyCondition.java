@@ -0,0 +1,27 @@
+package org.example.config;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Map;
+
+/**
+ * Условие для {@link ConditionalOnProperty}.
+ * Проверяется при сканировании компонентов, когда файлы свойств из {@link AppConfig} уже загружены.
+ */
+class OnPropertyCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        Map<String, Object> attributes = metadata.getAnnotationAttributes(ConditionalOnProperty.class.getName());
+        if (attributes == null) {
+            return true;
+        }
+        String value = context.getEnvironment().getProperty((String) attributes.get("value"));
+        if (value == null) {
+            return (Boolean) attributes.get("matchIfMissing");
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+}
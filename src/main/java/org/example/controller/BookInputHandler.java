@@ -2,8 +2,8 @@ package org.example.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.example.model.Book;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.MessageSource;
+import org.example.utils.MessageCatalog;
+import org.example.utils.MessageKey;
 import org.springframework.stereotype.Controller;
 
 import java.io.BufferedReader;
@@ -20,13 +20,7 @@ import java.util.Locale;
 @RequiredArgsConstructor
 public class BookInputHandler {
 
-    @Value("${color.error}")
-    private String error;
-
-    @Value("${color.reset}")
-    private String reset;
-
-    private final MessageSource messageSource;
+    private final MessageCatalog messageCatalog;
     private final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
 
     /**
@@ -37,15 +31,15 @@ public class BookInputHandler {
      */
     public Book newBookDetails(Locale currentLocale) {
         int id = getValidBookId(
-                messageSource.getMessage("handler.readAddId", null, currentLocale), currentLocale);
+                messageCatalog.get(MessageKey.HANDLER_READ_ADD_ID, currentLocale), currentLocale);
 
-        System.out.println(messageSource.getMessage("handler.readAddTitle", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_ADD_TITLE, currentLocale));
         String title = readLine();
 
-        System.out.println(messageSource.getMessage("handler.readAddAuthor", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_ADD_AUTHOR, currentLocale));
         String author = readLine();
 
-        System.out.println(messageSource.getMessage("handler.readAddDescription", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_ADD_DESCRIPTION, currentLocale));
         String description = readLine();
 
         return new Book(id, title, author, description);
@@ -58,7 +52,29 @@ public class BookInputHandler {
      * @return строку с названием книги.
      */
     public String findBookDetails(Locale currentLocale) {
-        System.out.println(messageSource.getMessage("handler.readAddTitle", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_ADD_TITLE, currentLocale));
+        return readLine();
+    }
+
+    /**
+     * Запрашивает у пользователя слова для поиска книг.
+     *
+     * @param currentLocale локаль языка, установленная пользователем.
+     * @return строку запроса.
+     */
+    public String searchQueryDetails(Locale currentLocale) {
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_SEARCH_QUERY, currentLocale));
+        return readLine();
+    }
+
+    /**
+     * Запрашивает у пользователя автора для поиска его книг.
+     *
+     * @param currentLocale локаль языка, установленная пользователем.
+     * @return строку с именем автора.
+     */
+    public String findAuthorDetails(Locale currentLocale) {
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_ADD_AUTHOR, currentLocale));
         return readLine();
     }
 
@@ -71,15 +87,15 @@ public class BookInputHandler {
     public Book updateBookDetails(Locale currentLocale) {
 
         int id = getValidBookId(
-                messageSource.getMessage("handler.readNewId", null, currentLocale), currentLocale);
+                messageCatalog.get(MessageKey.HANDLER_READ_NEW_ID, currentLocale), currentLocale);
 
-        System.out.println(messageSource.getMessage("handler.readNewTitle", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_NEW_TITLE, currentLocale));
         String title = readLine();
 
-        System.out.println(messageSource.getMessage("handler.readNewAuthor", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_NEW_AUTHOR, currentLocale));
         String author = readLine();
 
-        System.out.println(messageSource.getMessage("handler.readNewDescription", null, currentLocale));
+        System.out.println(messageCatalog.get(MessageKey.HANDLER_READ_NEW_DESCRIPTION, currentLocale));
         String description = readLine();
 
         return new Book(id, title, author, description);
@@ -93,7 +109,7 @@ public class BookInputHandler {
      */
     public int deleteBookDetails(Locale currentLocale) {
         return getValidBookId(
-                messageSource.getMessage("handler.readDeleteId", null, currentLocale), currentLocale);
+                messageCatalog.get(MessageKey.HANDLER_READ_DELETE_ID, currentLocale), currentLocale);
     }
 
     /**
@@ -111,16 +127,10 @@ public class BookInputHandler {
             try {
                 id = Integer.parseInt(readLine());
                 if (id < 0) {
-                    System.out.println(
-                            error +
-                            messageSource.getMessage("handler.invalidId", null, currentLocale) +
-                            reset);
+                    System.out.println(messageCatalog.error(MessageKey.HANDLER_INVALID_ID, currentLocale));
                 }
             } catch (NumberFormatException e) {
-                System.out.println(
-                        error +
-                        messageSource.getMessage("handler.notNumber", null, currentLocale) +
-                        reset);
+                System.out.println(messageCatalog.error(MessageKey.HANDLER_NOT_NUMBER, currentLocale));
             }
         }
         return id;
@@ -0,0 +1,426 @@
+package org.example.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.metrics.BookMetrics;
+import org.example.index.BookSortedIndex;
+import org.example.model.Book;
+import org.example.repository.BookWriteException;
+import org.example.service.BookService;
+import org.example.utils.MessageCatalog;
+import org.example.utils.MessageKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполняет текстовые команды из потока: одна команда в строке, ответ на нее - одна или несколько строк.
+ * Используется {@link CommandServer} для соединений по сокету и для команд из стандартного ввода.
+ * <p>
+ * Команды (поля книги разделяются символом {@code |}, описание может его содержать):
+ * <pre>
+ * GET id                              книга по ID
+ * ADD id|title|author|description     добавить книгу
+ * EDIT id|title|author|description    изменить книгу
+ * DELETE id                           удалить книгу
+ * ADDALL n                            добавить n книг из следующих n строк id|title|author|description
+ * EDITALL n                           изменить n книг из следующих n строк
+ * DELETEALL id [id...]                удалить книги
+ * FIND title                          книги с таким названием
+ * SEARCH query                        поиск по словам
+ * AUTHOR author                       книги автора без учета регистра
+ * RANGE fromId toId [limit]           книги с ID в диапазоне
+ * SORTED id|author [limit]            первые книги по ID или по автору
+ * LIST [offset] [limit]               страница каталога по ID
+ * LANG en|ru                          язык сообщений сеанса
+ * PING, QUIT
+ * </pre>
+ * Ответ начинается с {@code OK} или {@code ERR код сообщение}. На запросы книг
+ * возвращается {@code OK n}, а за ним n строк {@code id|title|author|description}.
+ * Пакетные команды выполняются одной записью на диск и возвращают {@code OK n}, а за ним n строк
+ * {@code id|результат} в порядке пакета, например {@code 7|DUPLICATE_ID}.
+ * <p>
+ * Строка длиннее {@code server.maxLineLength} символов и пакет больше {@code server.maxBatchSize} строк
+ * отклоняются с ошибкой, и сеанс закрывается: оставшиеся строки не читаются и не выполняются как команды.
+ * <p>
+ * Одновременно выполняется не больше {@code server.maxConcurrentCommands} команд всех сеансов.
+ * Если команда не получила разрешения за {@code server.commandTimeoutMillis}, она отклоняется
+ * с кодом {@code server.busy}, и клиент может повторить ее позже.
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class CommandProcessor {
+
+    private static final Set<String> COMMANDS = Set.of("PING", "GET", "ADD", "EDIT", "DELETE", "FIND", "SEARCH", "AUTHOR",
+            "RANGE", "SORTED", "LIST", "ADDALL", "EDITALL", "DELETEALL");
+
+    private final BookService bookService;
+    private final MessageCatalog messageCatalog;
+    private final BookMetrics bookMetrics;
+
+    @Value("${server.maxConcurrentCommands:64}")
+    private int maxConcurrentCommands;
+
+    @Value("${server.commandTimeoutMillis:1000}")
+    private long commandTimeoutMillis;
+
+    @Value("${server.maxListSize:10000}")
+    private int maxListSize;
+
+    @Value("${server.maxBatchSize:10000}")
+    private int maxBatchSize;
+
+    @Value("${server.maxLineLength:65536}")
+    private int maxLineLength;
+
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, maxConcurrentCommands), true);
+    }
+
+    /**
+     * Читает команды до конца потока или команды QUIT и пишет ответы.
+     * Слишком длинная строка или слишком большой пакет завершают сеанс с ошибкой.
+     * По завершении записывает в журнал статистику сеанса.
+     *
+     * @param in      поток команд.
+     * @param out     поток ответов, сбрасывается после каждого ответа.
+     * @param session имя сеанса для журнала.
+     * @throws IOException если произошла ошибка чтения или записи.
+     */
+    public void serve(BufferedReader in, Writer out, String session) throws IOException {
+        SessionStats stats = new SessionStats();
+        Locale locale = Locale.ENGLISH;
+        try {
+            String line;
+            while ((line = readLine(in)) != null) {
+                line = line.strip();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String command = commandOf(line);
+                if ("QUIT".equals(command)) {
+                    out.write("OK bye\n");
+                    break;
+                }
+                if ("LANG".equals(command)) {
+                    locale = "ru".equalsIgnoreCase(argumentOf(line)) ? new Locale("ru") : Locale.ENGLISH;
+                    out.write("OK " + locale.getLanguage() + "\n");
+                } else {
+                    String argument = argumentOf(line);
+                    if ("ADDALL".equals(command) || "EDITALL".equals(command)) {
+                        argument = readBatch(in, argument);
+                        if (argument == null) {
+                            error(out, MessageKey.SERVER_BATCH_TOO_LARGE, locale);
+                            break;
+                        }
+                    }
+                    long started = System.nanoTime();
+                    boolean failed = !execute(command, argument, locale, out);
+                    long elapsed = System.nanoTime() - started;
+                    stats.record(elapsed);
+                    bookMetrics.method("CommandServer." + (COMMANDS.contains(command) ? command : "unknown"))
+                            .record(elapsed, failed);
+                }
+                out.flush();
+            }
+            out.flush();
+        } catch (LineTooLongException e) {
+            log.warn("Сеанс {} закрыт: строка длиннее {} символов", session, maxLineLength);
+            error(out, MessageKey.SERVER_LINE_TOO_LONG, locale);
+            out.flush();
+        } finally {
+            long connected = System.nanoTime() - stats.started;
+            bookMetrics.method("CommandServer.session").record(connected, false);
+            log.info("Сеанс {} завершен: команд {}, выполнение {} мс, подключение {} мс", session,
+                    stats.commands, TimeUnit.NANOSECONDS.toMillis(stats.busyNanos),
+                    TimeUnit.NANOSECONDS.toMillis(connected));
+        }
+    }
+
+    /**
+     * Выполняет одну команду, дождавшись разрешения.
+     *
+     * @return false, если команда не выполнена.
+     */
+    private boolean execute(String command, String argument, Locale locale, Writer out) throws IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            error(out, MessageKey.SERVER_BUSY, locale);
+            return false;
+        }
+        try {
+            return dispatch(command, argument, locale, out);
+        } catch (NumberFormatException e) {
+            error(out, MessageKey.HANDLER_NOT_NUMBER, locale);
+            return false;
+        } catch (BookWriteException e) {
+            log.warn("Ошибка записи при выполнении команды {}: {}", command, e.getMessage());
+            error(out, MessageKey.SERVICE_FILE_WRITE_ERROR, locale);
+            return false;
+        } catch (RuntimeException e) {
+            log.error("Ошибка выполнения команды {}", command, e);
+            error(out, MessageKey.SERVER_INTERNAL_ERROR, locale);
+            return false;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean dispatch(String command, String argument, Locale locale, Writer out) throws IOException {
+        switch (command) {
+            case "PING" -> {
+                out.write("OK pong\n");
+                return true;
+            }
+            case "GET" -> {
+                Book book = bookService.findBookById(Integer.parseInt(argument));
+                if (book == null) {
+                    return outcome(out, BookService.Outcome.NOT_FOUND, locale);
+                }
+                books(out, List.of(book));
+                return true;
+            }
+            case "ADD" -> {
+                return outcome(out, bookService.create(parseBook(argument)), locale);
+            }
+            case "EDIT" -> {
+                return outcome(out, bookService.edit(parseBook(argument)), locale);
+            }
+            case "DELETE" -> {
+                return outcome(out, bookService.delete(Integer.parseInt(argument)), locale);
+            }
+            case "ADDALL", "EDITALL" -> {
+                List<Book> batch = new ArrayList<>();
+                for (String row : argument.split("\n")) {
+                    if (!row.isBlank()) {
+                        batch.add(parseBook(row));
+                    }
+                }
+                List<BookService.Outcome> outcomes = "ADDALL".equals(command)
+                        ? bookService.createBooks(batch)
+                        : bookService.editBooks(batch);
+                outcomes(out, batch.stream().map(Book::getId).toList(), outcomes);
+                return true;
+            }
+            case "DELETEALL" -> {
+                String[] values = argument.isEmpty() ? new String[0] : argument.split("\\s+");
+                if (values.length > maxBatchSize) {
+                    error(out, MessageKey.SERVER_BATCH_TOO_LARGE, locale);
+                    return false;
+                }
+                List<Integer> ids = new ArrayList<>(values.length);
+                for (String id : values) {
+                    ids.add(Integer.parseInt(id));
+                }
+                outcomes(out, ids, bookService.deleteBooks(ids));
+                return true;
+            }
+            case "FIND" -> {
+                books(out, bookService.findBooksByName(argument));
+                return true;
+            }
+            case "SEARCH" -> {
+                books(out, bookService.searchBooks(argument));
+                return true;
+            }
+            case "AUTHOR" -> {
+                books(out, bookService.findBooksByAuthor(argument, maxListSize));
+                return true;
+            }
+            case "RANGE" -> {
+                String[] bounds = argument.split("\\s+");
+                int limit = bounds.length > 2 ? Integer.parseInt(bounds[2]) : maxListSize;
+                books(out, bookService.findBooksByIdRange(Integer.parseInt(bounds[0]),
+                        bounds.length > 1 ? Integer.parseInt(bounds[1]) : Integer.MAX_VALUE, listLimit(limit)));
+                return true;
+            }
+            case "SORTED" -> {
+                String[] parts = argument.split("\\s+");
+                BookSortedIndex.SortOrder order = "author".equalsIgnoreCase(parts[0])
+                        ? BookSortedIndex.SortOrder.AUTHOR
+                        : BookSortedIndex.SortOrder.ID;
+                int limit = parts.length > 1 ? Integer.parseInt(parts[1]) : maxListSize;
+                books(out, bookService.readBooksSorted(order, listLimit(limit)));
+                return true;
+            }
+            case "LIST" -> {
+                String[] bounds = argument.isEmpty() ? new String[0] : argument.split("\\s+");
+                int offset = bounds.length > 0 ? Integer.parseInt(bounds[0]) : 0;
+                int limit = bounds.length > 1 ? Integer.parseInt(bounds[1]) : maxListSize;
+                books(out, bookService.readBooksPage(Math.max(0, offset), listLimit(limit)));
+                return true;
+            }
+            default -> {
+                error(out, MessageKey.SERVER_UNKNOWN_COMMAND, locale);
+                return false;
+            }
+        }
+    }
+
+    private int listLimit(int limit) {
+        return Math.max(0, Math.min(limit, maxListSize));
+    }
+
+    /**
+     * Разбирает книгу из строки {@code id|title|author|description}.
+     *
+     * @throws NumberFormatException если ID не число.
+     */
+    private static Book parseBook(String argument) {
+        String[] fields = argument.split("\\|", 4);
+        int id = Integer.parseInt(fields[0].strip());
+        if (id < 0) {
+            throw new NumberFormatException("Negative id: " + id);
+        }
+        return new Book(id,
+                fields.length > 1 ? fields[1] : "",
+                fields.length > 2 ? fields[2] : "",
+                fields.length > 3 ? fields[3] : "");
+    }
+
+    private boolean outcome(Writer out, BookService.Outcome outcome, Locale locale) throws IOException {
+        if (outcome.isSuccess()) {
+            out.write("OK " + messageCatalog.get(outcome.getMessageKey(), locale) + "\n");
+        } else {
+            error(out, outcome.getMessageKey(), locale);
+        }
+        return outcome.isSuccess();
+    }
+
+    private static void outcomes(Writer out, List<Integer> ids, List<BookService.Outcome> outcomes) throws IOException {
+        StringBuilder response = new StringBuilder(16 + outcomes.size() * 24);
+        response.append("OK ").append(outcomes.size()).append('\n');
+        for (int i = 0; i < outcomes.size(); i++) {
+            response.append(ids.get(i)).append('|').append(outcomes.get(i).name()).append('\n');
+        }
+        out.write(response.toString());
+    }
+
+    private static void books(Writer out, List<Book> books) throws IOException {
+        StringBuilder response = new StringBuilder(64 + books.size() * 64);
+        response.append("OK ").append(books.size()).append('\n');
+        for (Book book : books) {
+            response.append(book.getId()).append('|')
+                    .append(book.getTitle()).append('|')
+                    .append(book.getAuthor()).append('|')
+                    .append(book.getDescription()).append('\n');
+        }
+        out.write(response.toString());
+    }
+
+    private void error(Writer out, MessageKey key, Locale locale) throws IOException {
+        out.write("ERR " + key.getCode() + " " + messageCatalog.get(key, locale) + "\n");
+    }
+
+    /**
+     * Читает строки пакета: в аргументе команды их количество, сами строки идут следом.
+     * Количество проверяется до чтения: строки пакета больше {@code server.maxBatchSize} не читаются,
+     * и сеанс закрывается, чтобы не ждать их и не выполнить их как команды.
+     *
+     * @return строки пакета через {@code \n}, исходный аргумент, если количество не число,
+     * или null, если пакет больше {@code server.maxBatchSize}.
+     * @throws LineTooLongException если строка пакета длиннее {@code server.maxLineLength}.
+     */
+    private String readBatch(BufferedReader in, String argument) throws IOException {
+        int count;
+        try {
+            count = Integer.parseInt(argument);
+        } catch (NumberFormatException e) {
+            return argument;
+        }
+        if (count > maxBatchSize) {
+            return null;
+        }
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String row = readLine(in);
+            if (row == null) {
+                break;
+            }
+            rows.append(row).append('\n');
+        }
+        return rows.toString();
+    }
+
+    /**
+     * Читает строку, как {@link BufferedReader#readLine()}, но не длиннее {@code server.maxLineLength} символов,
+     * чтобы клиент без перевода строки не занял память сервера.
+     *
+     * @return строка без перевода строки или null в конце потока.
+     * @throws LineTooLongException если строка длиннее {@code server.maxLineLength}.
+     */
+    private String readLine(BufferedReader in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                return line.toString();
+            }
+            if (c == '\r') {
+                in.mark(1);
+                if (in.read() != '\n') {
+                    in.reset();
+                }
+                return line.toString();
+            }
+            if (line.length() >= maxLineLength) {
+                throw new LineTooLongException();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static String commandOf(String line) {
+        int space = line.indexOf(' ');
+        return (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+    }
+
+    private static String argumentOf(String line) {
+        int space = line.indexOf(' ');
+        return space < 0 ? "" : line.substring(space + 1).strip();
+    }
+
+    /**
+     * Строка команды длиннее {@code server.maxLineLength}: дальше поток не читается, сеанс закрывается.
+     */
+    private static class LineTooLongException extends IOException {
+        LineTooLongException() {
+            super("Command line is too long");
+        }
+    }
+
+    /**
+     * Статистика одного сеанса. Сеанс обслуживается одним потоком, поэтому синхронизация не нужна.
+     */
+    private static class SessionStats {
+        private final long started = System.nanoTime();
+        private long commands;
+        private long busyNanos;
+
+        void record(long elapsedNanos) {
+            commands++;
+            busyNanos += elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Controller;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Сервер команд {@link CommandProcessor} на локальном TCP порту, чтобы с одним каталогом
+ * могли работать несколько клиентов одновременно. Каждое соединение обслуживается в своем потоке:
+ * виртуальном, если JVM их поддерживает (Java 21+), иначе в пуле из {@code server.maxSessions} потоков.
+ * <p>
+ * Обратное давление: открыто не больше {@code server.maxSessions} сеансов, следующие соединения
+ * ждут в очереди операционной системы ({@code server.backlog}), пока какой-нибудь сеанс не завершится.
+ * Сеанс без команд дольше {@code server.idleTimeoutSeconds} закрывается.
+ */
+@Slf4j
+@Controller
+@RequiredArgsConstructor
+public class CommandServer {
+
+    private final CommandProcessor commandProcessor;
+
+    @Value("${server.host:127.0.0.1}")
+    private String host;
+
+    @Value("${server.port:7070}")
+    private int port;
+
+    @Value("${server.backlog:1024}")
+    private int backlog;
+
+    @Value("${server.maxSessions:1024}")
+    private int maxSessions;
+
+    @Value("${server.idleTimeoutSeconds:300}")
+    private int idleTimeoutSeconds;
+
+    private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+
+    private volatile ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Semaphore sessionPermits;
+    private Thread acceptor;
+
+    /**
+     * Открывает порт и начинает принимать соединения в фоновом потоке.
+     *
+     * @return номер порта, на котором принимаются соединения (при {@code server.port=0} выбирается свободный).
+     * @throws IOException если порт не удалось открыть.
+     */
+    public synchronized int start() throws IOException {
+        if (serverSocket != null) {
+            return serverSocket.getLocalPort();
+        }
+        sessionPermits = new Semaphore(Math.max(1, maxSessions));
+        executor = newSessionExecutor();
+        ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(InetAddress.getByName(host), port), backlog);
+        serverSocket = socket;
+        acceptor = new Thread(this::acceptLoop, "command-server-acceptor");
+        acceptor.start();
+        log.info("Сервер команд принимает соединения на {}:{}", host, socket.getLocalPort());
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Ждет, пока сервер не будет остановлен.
+     */
+    public void awaitTermination() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            thread = acceptor;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Выполняет команды из стандартного ввода и пишет ответы в стандартный вывод одним сеансом.
+     */
+    public void servePipe() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        commandProcessor.serve(in, out, "stdin");
+    }
+
+    /**
+     * Перестает принимать соединения, закрывает открытые сеансы и ждет их завершения.
+     */
+    @PreDestroy
+    public void stop() {
+        ServerSocket socket;
+        synchronized (this) {
+            socket = serverSocket;
+            serverSocket = null;
+        }
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия сервера команд: {}", e.getMessage());
+        }
+        for (Socket session : sessions) {
+            closeQuietly(session);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptLoop() {
+        ServerSocket socket = serverSocket;
+        while (socket != null && !socket.isClosed()) {
+            try {
+                // без свободного места новое соединение остается в очереди ОС
+                sessionPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Socket client;
+            try {
+                client = socket.accept();
+            } catch (IOException e) {
+                sessionPermits.release();
+                if (!socket.isClosed()) {
+                    log.warn("Ошибка приема соединения: {}", e.getMessage());
+                    continue;
+                }
+                return;
+            }
+            sessions.add(client);
+            executor.execute(() -> serveSession(client));
+        }
+    }
+
+    private void serveSession(Socket client) {
+        String name = "#" + sessionCounter.incrementAndGet() + " " + client.getRemoteSocketAddress();
+        try (client) {
+            client.setSoTimeout((int) TimeUnit.SECONDS.toMillis(idleTimeoutSeconds));
+            client.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+            commandProcessor.serve(in, out, name);
+        } catch (SocketTimeoutException e) {
+            log.info("Сеанс {} закрыт по тайм-ауту", name);
+        } catch (IOException e) {
+            log.debug("Сеанс {} прерван: {}", name, e.getMessage());
+        } finally {
+            sessions.remove(client);
+            sessionPermits.release();
+        }
+    }
+
+    /**
+     * Создает исполнитель с виртуальным потоком на каждый сеанс. Виртуальные потоки появились в Java 21,
+     * поэтому метод ищется через reflection, а на более старых JVM используется пул обычных потоков.
+     */
+    private ExecutorService newSessionExecutor() {
+        try {
+            ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Сеансы обслуживаются виртуальными потоками");
+            return virtual;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("Виртуальные потоки недоступны, сеансы обслуживаются пулом из {} потоков", maxSessions);
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, maxSessions), runnable -> {
+            Thread thread = new Thread(runnable, "command-session-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // сеанс уже закрыт
+        }
+    }
+}
@@ -1,44 +1,62 @@
 package org.example.controller;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.metrics.BookMetrics;
 import org.example.model.Book;
 import org.example.service.BookService;
+import org.example.service.BookTransferService;
 import org.example.utils.BookUtils;
+import org.example.utils.MessageCatalog;
+import org.example.utils.MessageKey;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.MessageSource;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Controller;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * Класс {@code MainMenu} отвечает за отображение главного меню и обработку пользовательского ввода.
+ * Время от запуска JVM до первого меню записывается в журнал и в метрику {@code Startup.firstMenu}.
  */
+@Slf4j
 @Controller
 @RequiredArgsConstructor
 public class MainMenu {
 
+    /**
+     * Сервис подставляется через ленивый прокси: каталог загружается при первой операции с книгами,
+     * а не до показа меню выбора языка.
+     */
+    @Lazy
     private final BookService bookService;
+    @Lazy
+    private final BookTransferService bookTransferService;
     private final BookInputHandler bookInputHandler;
-    private final MessageSource messageSource;
+    private final MessageCatalog messageCatalog;
     private final BookUtils bookUtils;
+    private final BookMetrics bookMetrics;
 
-    @Value("${color.error}")
-    private String error;
-
-    @Value("${color.reset}")
-    private String reset;
-
-    @Value("${color.text}")
-    private String text;
+    @Value("${listing.pageSize:20}")
+    private int pageSize;
 
 
     private Locale currentLocale = Locale.getDefault();
 
     public void menu() {
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        bookMetrics.method("Startup.firstMenu").record(TimeUnit.MILLISECONDS.toNanos(uptime), false);
+        log.info("Меню готово через {} мс после запуска JVM", uptime);
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
             language(reader);
@@ -55,12 +73,8 @@ public class MainMenu {
 
         int input;
         do {
-            System.out.println(text);
-            System.out.println(messageSource.getMessage("menu.language", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.option1", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.option2", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.exit", null, currentLocale));
-            System.out.println(reset);
+            System.out.println(messageCatalog.of(currentLocale).menu(MessageKey.MENU_LANGUAGE,
+                    MessageKey.MENU_OPTION1, MessageKey.MENU_OPTION2, MessageKey.MENU_EXIT));
 
             try {
                 input = Integer.parseInt(reader.readLine());
@@ -73,13 +87,11 @@ public class MainMenu {
                         currentLocale = Locale.ENGLISH;
                         run(reader);
                     }
-                    case 0 -> System.out.println(messageSource.getMessage("menu.exitMessage", null, currentLocale));
-                    default -> System.out.println(error +
-                                    messageSource.getMessage("menu.invalid", null, currentLocale) +
-                                    reset);
+                    case 0 -> System.out.println(messageCatalog.get(MessageKey.MENU_EXIT_MESSAGE, currentLocale));
+                    default -> System.out.println(messageCatalog.error(MessageKey.MENU_INVALID, currentLocale));
                 }
             } catch (NumberFormatException e) {
-                System.out.println(error + messageSource.getMessage("menu.notNumber", null, currentLocale) + reset);
+                System.out.println(messageCatalog.error(MessageKey.MENU_NOT_NUMBER, currentLocale));
                 input = -1;
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -95,38 +107,138 @@ public class MainMenu {
 
         int input;
         do {
-            System.out.println(text);
-            System.out.println(messageSource.getMessage("menu.action", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.listBooks", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.findBook", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.createBook", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.editBook", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.deleteBook", null, currentLocale));
-            System.out.println(messageSource.getMessage("menu.exitAction", null, currentLocale));
-            System.out.println(reset);
+            System.out.println(messageCatalog.of(currentLocale).menu(MessageKey.MENU_ACTION,
+                    MessageKey.MENU_LIST_BOOKS, MessageKey.MENU_FIND_BOOK, MessageKey.MENU_CREATE_BOOK,
+                    MessageKey.MENU_EDIT_BOOK, MessageKey.MENU_DELETE_BOOK, MessageKey.MENU_SEARCH_BOOKS,
+                    MessageKey.MENU_STATISTICS, MessageKey.MENU_FIND_BY_AUTHOR, MessageKey.MENU_EXPORT_BOOKS,
+                    MessageKey.MENU_IMPORT_BOOKS, MessageKey.MENU_EXIT_ACTION));
 
             try {
                 input = Integer.parseInt(reader.readLine());
                 switch (input) {
-                    case 1 -> bookUtils.listBooks(bookService.readBooks(currentLocale), messageSource, currentLocale);
+                    case 1 -> listBooksByPages(reader);
                     case 2 -> {
                         String readBookName = bookInputHandler.findBookDetails(currentLocale);
                         List<Book> foundBooks =bookService.findBooksByName(readBookName);
-                        bookUtils.listBooks(foundBooks,messageSource, currentLocale);
+                        bookUtils.listBooks(foundBooks, currentLocale);
                     }
                     case 3 -> bookService.createBook(bookInputHandler.newBookDetails(currentLocale), currentLocale);
                     case 4 -> bookService.editBook(bookInputHandler.updateBookDetails(currentLocale), currentLocale);
                     case 5 -> bookService.deleteBook(bookInputHandler.deleteBookDetails(currentLocale), currentLocale);
-                    case 0 -> System.out.println(messageSource.getMessage("menu.exitMessage", null, currentLocale));
+                    case 6 -> {
+                        String query = bookInputHandler.searchQueryDetails(currentLocale);
+                        bookUtils.listBooks(bookService.searchBooks(query), currentLocale);
+                    }
+                    case 7 -> statistics(reader);
+                    case 8 -> {
+                        String author = bookInputHandler.findAuthorDetails(currentLocale);
+                        bookUtils.listBooks(bookService.findBooksByAuthor(author, Integer.MAX_VALUE),
+                                currentLocale);
+                    }
+                    case 9 -> transfer(reader, true);
+                    case 10 -> transfer(reader, false);
+                    case 0 -> System.out.println(messageCatalog.get(MessageKey.MENU_EXIT_MESSAGE, currentLocale));
                     default ->
-                            System.out.println(error + messageSource.getMessage("menu.invalid", null, currentLocale) + reset);
+                            System.out.println(messageCatalog.error(MessageKey.MENU_INVALID, currentLocale));
                 }
             } catch (NumberFormatException e) {
-                System.out.println(error + messageSource.getMessage("menu.notNumber", null, currentLocale) + reset);
+                System.out.println(messageCatalog.error(MessageKey.MENU_NOT_NUMBER, currentLocale));
                 input = -1;
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         } while (input != 0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Выводит список книг по страницам, чтобы не загружать в список весь каталог.
+     * После каждой полной страницы пользователь может перейти к следующей или вернуться в меню.
+     * Если размер страницы не больше 0 или выводится только количество книг, каталог выводится целиком потоком.
+     */
+    private void listBooksByPages(BufferedReader reader) throws IOException {
+        if (pageSize <= 0 || bookUtils.isQuiet()) {
+            try (Stream<Book> books = bookService.streamBooks()) {
+                bookUtils.listBooks(books.iterator(), currentLocale);
+            }
+            return;
+        }
+        int offset = 0;
+        while (true) {
+            List<Book> page = bookService.readBooksPage(offset, pageSize);
+            if (page.isEmpty() && offset > 0) {
+                return;
+            }
+            bookUtils.listBooks(page, currentLocale);
+            if (page.size() < pageSize) {
+                return;
+            }
+            offset += page.size();
+            System.out.println(messageCatalog.text(MessageKey.MENU_NEXT_PAGE, currentLocale));
+            String answer = reader.readLine();
+            if (answer == null || !answer.isBlank()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Выводит метрики времени выполнения операций, ввода-вывода и кеша
+     * и по желанию пользователя сохраняет их в файл.
+     */
+    private void statistics(BufferedReader reader) throws IOException {
+        System.out.print(bookMetrics.report());
+        System.out.println(messageCatalog.text(MessageKey.MENU_DUMP_STATISTICS, currentLocale));
+        String fileName = reader.readLine();
+        if (fileName == null || fileName.isBlank()) {
+            return;
+        }
+        Path target = Path.of(fileName.trim());
+        try {
+            bookMetrics.dump(target);
+            System.out.println(messageCatalog.get(MessageKey.MENU_STATISTICS_SAVED, currentLocale) + " "
+                    + target.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println(messageCatalog.error(MessageKey.MENU_STATISTICS_WRITE_ERROR, e.getMessage(),
+                    currentLocale));
+        }
+    }
+
+    /**
+     * Выгружает книги в файл или загружает их из файла с отбором по названию и автору.
+     *
+     * @param export true - выгрузка каталога, false - загрузка в каталог.
+     */
+    private void transfer(BufferedReader reader, boolean export) throws IOException {
+        System.out.println(messageCatalog.text(MessageKey.MENU_TRANSFER_FILE, currentLocale));
+        String fileName = reader.readLine();
+        if (fileName == null || fileName.isBlank()) {
+            return;
+        }
+        System.out.println(messageCatalog.get(MessageKey.MENU_TRANSFER_TITLE, currentLocale));
+        String title = reader.readLine();
+        System.out.println(messageCatalog.get(MessageKey.MENU_TRANSFER_AUTHOR, currentLocale));
+        String author = reader.readLine();
+
+        Path file = Path.of(fileName.trim());
+        try {
+            Predicate<Book> filter = BookTransferService.matching(title, author);
+            if (export) {
+                BookTransferService.TransferReport report = bookTransferService.export(file, filter);
+                System.out.println(messageCatalog.get(MessageKey.MENU_EXPORTED, currentLocale) + " "
+                        + report.getBooks() + ", " + file.toAbsolutePath());
+            } else {
+                BookTransferService.TransferReport report = bookTransferService.importBooks(file, filter);
+                System.out.println(messageCatalog.get(MessageKey.MENU_IMPORTED, currentLocale) + " "
+                        + report.getBooks());
+                if (report.getSkipped() > 0) {
+                    System.out.println(messageCatalog.error(MessageKey.MENU_SKIPPED, report.getSkipped(),
+                            currentLocale));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(messageCatalog.error(MessageKey.MENU_TRANSFER_FORMAT, currentLocale));
+        } catch (UncheckedIOException e) {
+            System.out.println(messageCatalog.error(MessageKey.MENU_TRANSFER_ERROR, e.getMessage(), currentLocale));
+        }
+    }
+}
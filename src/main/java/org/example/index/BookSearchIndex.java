@@ -0,0 +1,327 @@
+package org.example.index;
+
+import lombok.RequiredArgsConstructor;
+import org.example.model.Book;
+import org.example.repository.BookChangeListener;
+import org.example.repository.BookRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названию, автору и описанию книг.
+ * Текст разбивается на слова (буквы и цифры, кириллица и латиница), приводится к нижнему регистру,
+ * а буква «ё» заменяется на «е». Для каждого слова хранится отсортированный список ID книг.
+ * <p>
+ * Индекс подписан на изменения {@link BookRepository} и обновляется по месту при создании,
+ * редактировании и удалении книг.
+ * <p>
+ * Запрос пересекает списки слов по месту под блокировкой чтения, начиная с самого короткого,
+ * и копирует только результат, поэтому частое слово в запросе не копирует весь свой список.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookSearchIndex implements BookChangeListener {
+
+    private final BookRepository bookRepository;
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void init() {
+        bookRepository.addChangeListener(this);
+    }
+
+    /**
+     * Ищет книги, содержащие все слова запроса.
+     * Слово, оканчивающееся на {@code *}, ищется по префиксу, остальные - целиком.
+     *
+     * @param query строка запроса, например {@code "война мир*"}.
+     * @return отсортированные ID найденных книг, пустой массив если в запросе нет слов.
+     */
+    public int[] search(String query) {
+        List<Postings> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String part : query.trim().split("\\s+")) {
+                List<String> tokens = tokenize(part);
+                boolean prefix = part.endsWith("*");
+                for (int i = 0; i < tokens.size(); i++) {
+                    Postings postings = prefix && i == tokens.size() - 1
+                            ? prefixPostings(tokens.get(i))
+                            : terms.get(tokens.get(i));
+                    if (postings == null || postings.size == 0) {
+                        return new int[0];
+                    }
+                    matches.add(postings);
+                }
+            }
+            return intersect(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает ID книг, содержащих все слова текста целиком.
+     * Используется для сужения поиска по точному названию.
+     *
+     * @param text текст, например название книги.
+     * @return отсортированные ID книг или null, если в тексте нет слов.
+     */
+    public int[] candidates(String text) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        List<Postings> matches = new ArrayList<>(tokens.size());
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                Postings postings = terms.get(token);
+                if (postings == null) {
+                    return new int[0];
+                }
+                matches.add(postings);
+            }
+            return intersect(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onReload(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            for (Book book : books) {
+                for (String token : tokens(book)) {
+                    terms.computeIfAbsent(token, t -> new Postings()).append(book.getId());
+                }
+            }
+            for (Postings postings : terms.values()) {
+                postings.sort();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUpsert(Book previous, Book current) {
+        lock.writeLock().lock();
+        try {
+            if (previous != null) {
+                removeTokens(previous);
+            }
+            for (String token : tokens(current)) {
+                terms.computeIfAbsent(token, t -> new Postings()).add(current.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onDelete(Book removed) {
+        lock.writeLock().lock();
+        try {
+            removeTokens(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет все изменения пакета под одной блокировкой индекса.
+     */
+    @Override
+    public void onBatch(List<Book> previous, List<Book> current) {
+        lock.writeLock().lock();
+        try {
+            BookChangeListener.super.onBatch(previous, current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Разбивает текст на нормализованные слова без повторов.
+     *
+     * @param text исходный текст, может быть null.
+     * @return список слов в порядке появления.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(normalize(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    private static Set<String> tokens(Book book) {
+        Set<String> tokens = new HashSet<>(tokenize(book.getTitle()));
+        tokens.addAll(tokenize(book.getAuthor()));
+        tokens.addAll(tokenize(book.getDescription()));
+        return tokens;
+    }
+
+    private void removeTokens(Book book) {
+        for (String token : tokens(book)) {
+            Postings postings = terms.get(token);
+            if (postings != null && postings.remove(book.getId()) && postings.size == 0) {
+                terms.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Возвращает ID книг со словами, начинающимися с префикса.
+     * Если такое слово одно, возвращается его список из индекса без копирования.
+     *
+     * @return список ID или null, если таких слов нет.
+     */
+    private Postings prefixPostings(String prefix) {
+        SortedMap<String, Postings> range = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.size() <= 1) {
+            return range.isEmpty() ? null : range.get(range.firstKey());
+        }
+        int total = 0;
+        for (Postings postings : range.values()) {
+            total += postings.size;
+        }
+        int[] ids = new int[total];
+        int offset = 0;
+        for (Postings postings : range.values()) {
+            System.arraycopy(postings.ids, 0, ids, offset, postings.size);
+            offset += postings.size;
+        }
+        Arrays.sort(ids);
+        ids = distinct(ids);
+        return new Postings(ids, ids.length);
+    }
+
+    private static int[] distinct(int[] sorted) {
+        if (sorted.length == 0) {
+            return sorted;
+        }
+        int size = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    /**
+     * Пересекает отсортированные списки ID, начиная с самого короткого.
+     * Списки из индекса не меняются: совпадения пишутся в новый массив размером с самый короткий список,
+     * поэтому вызывать нужно под блокировкой чтения.
+     */
+    private static int[] intersect(List<Postings> lists) {
+        if (lists.isEmpty()) {
+            return new int[0];
+        }
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+        Postings shortest = lists.get(0);
+        if (lists.size() == 1) {
+            return Arrays.copyOf(shortest.ids, shortest.size);
+        }
+        int[] result = new int[shortest.size];
+        int[] source = shortest.ids;
+        int size = shortest.size;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            Postings other = lists.get(l);
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < other.size; i++) {
+                int id = source[i];
+                while (j < other.size && other.ids[j] < id) {
+                    j++;
+                }
+                if (j < other.size && other.ids[j] == id) {
+                    result[kept++] = id;
+                }
+            }
+            source = result;
+            size = kept;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Отсортированный список ID книг для одного слова.
+     */
+    private static class Postings {
+        private int[] ids;
+        private int size;
+
+        Postings() {
+            this(new int[2], 0);
+        }
+
+        Postings(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void sort() {
+            Arrays.sort(ids, 0, size);
+        }
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
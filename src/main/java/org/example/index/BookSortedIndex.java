@@ -0,0 +1,396 @@
+package org.example.index;
+
+import lombok.RequiredArgsConstructor;
+import org.example.model.Book;
+import org.example.repository.BookChangeListener;
+import org.example.repository.BookRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Упорядоченные индексы книг по ID и по автору.
+ * Автор приводится к нижнему регистру без пробелов по краям, а буква «ё» заменяется на «е»,
+ * поэтому «Толстой Л.Н.» и «толстой л.н.» - один автор. Книги одного автора упорядочены по ID.
+ * Поиск по автору, выборка диапазона ID и отсортированный список с ограничением
+ * выполняются за O(log n + k), где k - количество возвращенных книг.
+ * Индекс хранит только ID и автора, а сами книги берутся из {@link BookRepository}.
+ * <p>
+ * ID хранятся в отсортированных массивах int: один массив всех ID и по массиву на автора,
+ * а приведенное имя автора хранится одним экземпляром - ключом карты авторов.
+ * Поэтому на книгу приходится около 8 байт вместо узлов дерева и отдельных строк.
+ * <p>
+ * Индекс подписан на изменения {@link BookRepository} и обновляется по месту при создании,
+ * редактировании и удалении книг. Большие пакеты изменений применяются слиянием массивов за один проход.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookSortedIndex implements BookChangeListener {
+
+    /**
+     * Начиная с этого размера пакет применяется слиянием, а не по одной книге.
+     */
+    private static final int MERGE_BATCH_SIZE = 64;
+
+    /**
+     * Порядок отсортированного списка книг.
+     */
+    public enum SortOrder {
+        ID,
+        AUTHOR
+    }
+
+    private final BookRepository bookRepository;
+
+    private final SortedIds byId = new SortedIds();
+    private final NavigableMap<String, SortedIds> byAuthor = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void init() {
+        bookRepository.addChangeListener(this);
+    }
+
+    /**
+     * Возвращает книги автора без учета регистра.
+     *
+     * @param author автор.
+     * @param limit  максимальное количество книг.
+     * @return книги автора, упорядоченные по ID.
+     */
+    public List<Book> findByAuthor(String author, int limit) {
+        String folded = fold(author);
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            SortedIds authorIds = byAuthor.get(folded);
+            ids = authorIds == null ? new int[0] : authorIds.copy(0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bookRepository.findBooksByIds(ids);
+    }
+
+    /**
+     * Возвращает книги с ID в диапазоне.
+     *
+     * @param fromId наименьший ID, включительно.
+     * @param toId   наибольший ID, включительно.
+     * @param limit  максимальное количество книг.
+     * @return книги, упорядоченные по ID, пустой список если {@code fromId > toId}.
+     */
+    public List<Book> findByIdRange(int fromId, int toId, int limit) {
+        if (fromId > toId) {
+            return List.of();
+        }
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            int from = byId.lowerBound(fromId);
+            int to = toId == Integer.MAX_VALUE ? byId.size() : byId.lowerBound(toId + 1);
+            ids = byId.copy(from, (int) Math.min(to - from, Math.max(0, limit)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bookRepository.findBooksByIds(ids);
+    }
+
+    /**
+     * Возвращает первые книги каталога в заданном порядке.
+     *
+     * @param order порядок: по ID или по автору, затем по ID.
+     * @param limit максимальное количество книг.
+     */
+    public List<Book> sorted(SortOrder order, int limit) {
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = order == SortOrder.AUTHOR ? firstByAuthor(limit) : byId.copy(0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bookRepository.findBooksByIds(ids);
+    }
+
+    /**
+     * Возвращает страницу каталога, упорядоченного по ID.
+     * Начало страницы находится по позиции в массиве ID, поэтому листание всего каталога
+     * страницами стоит O(n), а не O(n²), как при пропуске книг с начала.
+     *
+     * @param offset сколько книг пропустить с начала каталога.
+     * @param limit  максимальное количество книг на странице.
+     * @return книги страницы, пустой список если страница за пределами каталога.
+     */
+    public List<Book> page(int offset, int limit) {
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = byId.copy(Math.min(Math.max(0, offset), byId.size()), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bookRepository.findBooksByIds(ids);
+    }
+
+    @Override
+    public void onReload(List<Book> books) {
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            byAuthor.clear();
+            for (Book book : books) {
+                byId.append(book.getId());
+                byAuthor.computeIfAbsent(fold(book.getAuthor()), author -> new SortedIds()).append(book.getId());
+            }
+            byId.sort();
+            for (SortedIds ids : byAuthor.values()) {
+                ids.sort();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onUpsert(Book previous, Book current) {
+        lock.writeLock().lock();
+        try {
+            if (previous != null) {
+                remove(previous);
+            }
+            add(current);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onDelete(Book removed) {
+        lock.writeLock().lock();
+        try {
+            remove(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Применяет все изменения пакета под одной блокировкой индекса.
+     * Большой пакет сводится к состояниям книг до и после пакета, и каждый затронутый массив
+     * перестраивается одним слиянием, а не сдвигом массива на каждую книгу.
+     */
+    @Override
+    public void onBatch(List<Book> previous, List<Book> current) {
+        lock.writeLock().lock();
+        try {
+            if (current.size() < MERGE_BATCH_SIZE) {
+                BookChangeListener.super.onBatch(previous, current);
+                return;
+            }
+            Map<Integer, Book> before = new HashMap<>();
+            Map<Integer, Book> after = new HashMap<>();
+            for (int i = 0; i < current.size(); i++) {
+                Book changed = current.get(i) != null ? current.get(i) : previous.get(i);
+                if (!before.containsKey(changed.getId())) {
+                    before.put(changed.getId(), previous.get(i));
+                }
+                after.put(changed.getId(), current.get(i));
+            }
+            SortedIds removedIds = new SortedIds();
+            SortedIds addedIds = new SortedIds();
+            Map<String, SortedIds[]> authorChanges = new HashMap<>();
+            for (Book book : before.values()) {
+                if (book != null) {
+                    removedIds.append(book.getId());
+                    authorChanges.computeIfAbsent(fold(book.getAuthor()), author -> newChanges())[0].append(book.getId());
+                }
+            }
+            for (Book book : after.values()) {
+                if (book != null) {
+                    addedIds.append(book.getId());
+                    authorChanges.computeIfAbsent(fold(book.getAuthor()), author -> newChanges())[1].append(book.getId());
+                }
+            }
+            byId.update(removedIds, addedIds);
+            authorChanges.forEach((author, changes) -> {
+                SortedIds ids = byAuthor.computeIfAbsent(author, key -> new SortedIds());
+                ids.update(changes[0], changes[1]);
+                if (ids.size() == 0) {
+                    byAuthor.remove(author);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Приводит имя автора к виду, в котором оно хранится в индексе.
+     *
+     * @param author имя автора, может быть null.
+     */
+    public static String fold(String author) {
+        if (author == null) {
+            return "";
+        }
+        return author.strip().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    private void add(Book book) {
+        byId.add(book.getId());
+        byAuthor.computeIfAbsent(fold(book.getAuthor()), author -> new SortedIds()).add(book.getId());
+    }
+
+    private void remove(Book book) {
+        byId.remove(book.getId());
+        String author = fold(book.getAuthor());
+        SortedIds ids = byAuthor.get(author);
+        if (ids != null && ids.remove(book.getId()) && ids.size() == 0) {
+            byAuthor.remove(author);
+        }
+    }
+
+    private int[] firstByAuthor(int limit) {
+        int[] ids = new int[Math.max(0, Math.min(limit, byId.size()))];
+        int count = 0;
+        for (SortedIds authorIds : byAuthor.values()) {
+            if (count == ids.length) {
+                break;
+            }
+            int copied = Math.min(authorIds.size(), ids.length - count);
+            System.arraycopy(authorIds.ids, 0, ids, count, copied);
+            count += copied;
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private static SortedIds[] newChanges() {
+        return new SortedIds[]{new SortedIds(), new SortedIds()};
+    }
+
+    /**
+     * Отсортированный список ID без повторов.
+     */
+    private static class SortedIds {
+        private int[] ids = new int[2];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            ids = new int[2];
+            size = 0;
+        }
+
+        /**
+         * Дописывает ID без сохранения порядка, после серии вызовов нужен {@link #sort()}.
+         */
+        void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * Упорядочивает дописанные ID и убирает повторы.
+         */
+        void sort() {
+            Arrays.sort(ids, 0, size);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            size = distinct;
+        }
+
+        boolean add(int id) {
+            // новые книги обычно получают наибольший ID
+            if (size > 0 && ids[size - 1] < id) {
+                append(id);
+                return true;
+            }
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+            return true;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Удаляет и добавляет ID одним слиянием.
+         *
+         * @param removed ID для удаления, упорядочиваются вызовом.
+         * @param added   ID для добавления после удаления, упорядочиваются вызовом.
+         */
+        void update(SortedIds removed, SortedIds added) {
+            removed.sort();
+            added.sort();
+            int[] merged = new int[Math.max(2, size + added.size)];
+            int count = 0;
+            int r = 0;
+            int a = 0;
+            for (int i = 0; i < size; i++) {
+                int id = ids[i];
+                while (r < removed.size && removed.ids[r] < id) {
+                    r++;
+                }
+                if (r < removed.size && removed.ids[r] == id) {
+                    continue;
+                }
+                while (a < added.size && added.ids[a] < id) {
+                    merged[count++] = added.ids[a++];
+                }
+                if (a < added.size && added.ids[a] == id) {
+                    a++;
+                }
+                merged[count++] = id;
+            }
+            while (a < added.size) {
+                merged[count++] = added.ids[a++];
+            }
+            ids = merged;
+            size = count;
+        }
+
+        /**
+         * Возвращает позицию первого ID, не меньшего заданного.
+         */
+        int lowerBound(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        /**
+         * Копирует не больше {@code limit} ID, начиная с позиции {@code from}.
+         */
+        int[] copy(int from, int limit) {
+            int count = Math.max(0, Math.min(limit, size - from));
+            return Arrays.copyOfRange(ids, from, from + count);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Метрики приложения: время выполнения и ошибки операций, количество прочитанных и записанных книг и байтов,
+ * попадания и промахи кеша. Все счетчики пишутся без блокировок и могут обновляться из многих потоков.
+ * Время методов сервиса и репозитория записывает {@link org.example.aop.MetricsAspect},
+ * а время внутренних операций ввода-вывода - сам репозиторий через {@link #time(String, Supplier)}.
+ */
+@Component
+public class BookMetrics {
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private volatile Instant since = Instant.now();
+
+    /**
+     * Возвращает статистику операции, создавая ее при первом обращении.
+     *
+     * @param name имя операции, например {@code BookService.findBooksByName}.
+     */
+    public MethodMetrics method(String name) {
+        return methods.computeIfAbsent(name, MethodMetrics::new);
+    }
+
+    /**
+     * Выполняет действие и записывает его время и исключение, если оно было.
+     */
+    public <T> T time(String name, Supplier<T> action) {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = action.get();
+            failed = false;
+            return result;
+        } finally {
+            method(name).record(System.nanoTime() - started, failed);
+        }
+    }
+
+    public void recordRead(long rows, long bytes) {
+        rowsRead.add(rows);
+        bytesRead.add(bytes);
+    }
+
+    public void recordWrite(long rows, long bytes) {
+        rowsWritten.add(rows);
+        bytesWritten.add(bytes);
+    }
+
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Обнуляет все метрики.
+     */
+    public void reset() {
+        methods.values().forEach(MethodMetrics::reset);
+        rowsRead.reset();
+        rowsWritten.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        since = Instant.now();
+    }
+
+    /**
+     * Возвращает сводную таблицу метрик: по операциям - число вызовов, ошибок и перцентили времени в микросекундах.
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        Duration period = Duration.between(since, Instant.now());
+        out.append(String.format(Locale.ROOT, "Metrics for %d s%n", period.getSeconds()));
+        out.append(String.format(Locale.ROOT, "%-36s %9s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "errors", "mean us", "p50 us", "p90 us", "p99 us", "max us"));
+        for (MethodMetrics method : sortedMethods()) {
+            Histogram latency = method.latency();
+            if (latency.getTotalCount() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "%-36s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    method.getName(), latency.getTotalCount(), method.errors(),
+                    latency.getMean() / 1000,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(90) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getMaxValue() / 1000.0));
+        }
+        out.append(String.format(Locale.ROOT, "rows read %d, rows written %d%n", rowsRead.sum(), rowsWritten.sum()));
+        out.append(String.format(Locale.ROOT, "bytes read %d, bytes written %d%n", bytesRead.sum(), bytesWritten.sum()));
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+        double ratio = hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses);
+        out.append(String.format(Locale.ROOT, "cache hits %d, misses %d, hit ratio %.1f%%%n", hits, misses, ratio));
+        return out.toString();
+    }
+
+    /**
+     * Записывает в файл сводную таблицу и полные распределения времени операций
+     * в формате HdrHistogram (значения в микросекундах), пригодном для построения графиков.
+     *
+     * @param target файл, перезаписывается.
+     * @throws IOException если произошла ошибка записи.
+     */
+    public void dump(Path target) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(target), false, StandardCharsets.UTF_8)) {
+            out.print(report());
+            for (MethodMetrics method : sortedMethods()) {
+                Histogram latency = method.latency();
+                if (latency.getTotalCount() == 0) {
+                    continue;
+                }
+                out.println();
+                out.println("# " + method.getName());
+                latency.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private List<MethodMetrics> sortedMethods() {
+        List<MethodMetrics> sorted = new ArrayList<>(methods.values());
+        sorted.sort(Comparator.comparing(MethodMetrics::getName));
+        return sorted;
+    }
+}
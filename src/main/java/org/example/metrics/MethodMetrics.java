@@ -0,0 +1,56 @@
+package org.example.metrics;
+
+import lombok.Getter;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика одной операции: распределение времени выполнения и количество ошибок.
+ * Время записывается в {@link ConcurrentHistogram} без блокировок, с точностью 2 значащих цифр.
+ */
+public class MethodMetrics {
+
+    @Getter
+    private final String name;
+    private final ConcurrentHistogram latency = new ConcurrentHistogram(2);
+    private final LongAdder errors = new LongAdder();
+
+    public MethodMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Записывает один вызов.
+     *
+     * @param elapsedNanos время выполнения в наносекундах.
+     * @param failed       вызов завершился исключением.
+     */
+    public void record(long elapsedNanos, boolean failed) {
+        latency.recordValue(Math.max(0, elapsedNanos));
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public long calls() {
+        return latency.getTotalCount();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * Возвращает копию распределения времени в наносекундах.
+     */
+    public Histogram latency() {
+        return latency.copy();
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+    }
+}
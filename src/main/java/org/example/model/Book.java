@@ -1,6 +1,7 @@
 package org.example.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
@@ -24,6 +25,14 @@ public class Book {
     @JsonProperty("description")
     private String description;
 
+    /**
+     * Версия книги в каталоге. Назначается репозиторием при каждом сохранении и в файл не записывается.
+     * Ненулевая версия у измененной книги означает, что изменение сделано на основе этой версии,
+     * и если книгу за это время изменили, изменение отклоняется. Ноль - изменение без проверки.
+     */
+    @JsonIgnore
+    private long version;
+
     @JsonCreator
     public Book(
             @JsonProperty("id") int id,
@@ -0,0 +1,240 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Двоичный снимок каталога книг для быстрой загрузки вместо разбора CSV.
+ * <p>
+ * Формат (little-endian):
+ * <pre>
+ * magic "BKSN" | version:int | count:int | offsets:long[count] | records...
+ * record = id:int | title | author | description
+ * строка = length:int (-1 для null) | байты UTF-8
+ * </pre>
+ * Таблица смещений позволяет прочитать любую запись без чтения предыдущих.
+ */
+public class BinaryBookSnapshot {
+
+    public static final int MAGIC = 0x4E534B42; // "BKSN"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private BinaryBookSnapshot() {
+    }
+
+    /**
+     * Записывает книги в двоичный снимок.
+     *
+     * @param books книги в порядке каталога.
+     * @param path  файл снимка, перезаписывается.
+     * @throws IOException если произошла ошибка записи.
+     */
+    public static void write(List<Book> books, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int count = books.size();
+            long[] offsets = new long[count];
+            long position = HEADER_SIZE + (long) count * Long.BYTES;
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(position);
+            for (int i = 0; i < count; i++) {
+                Book book = books.get(i);
+                byte[] title = bytes(book.getTitle());
+                byte[] author = bytes(book.getAuthor());
+                byte[] description = bytes(book.getDescription());
+                int length = Integer.BYTES * 4 + length(title) + length(author) + length(description);
+                if (buffer.remaining() < length) {
+                    flush(channel, buffer);
+                    if (buffer.capacity() < length) {
+                        buffer = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                }
+                offsets[i] = position;
+                buffer.putInt(book.getId());
+                putString(buffer, title);
+                putString(buffer, author);
+                putString(buffer, description);
+                position += length;
+            }
+            flush(channel, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + count * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count);
+            for (long offset : offsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            long headerPosition = 0;
+            while (header.hasRemaining()) {
+                headerPosition += channel.write(header, headerPosition);
+            }
+        }
+    }
+
+    /**
+     * Читает все книги из двоичного снимка.
+     *
+     * @param path файл снимка.
+     * @return книги в порядке записи.
+     * @throws IOException если файл не удалось прочитать или он поврежден.
+     */
+    public static List<Book> read(Path path) throws IOException {
+        try (Reader reader = open(path)) {
+            int count = reader.count();
+            List<Book> books = new ArrayList<>(count);
+            MappedByteBuffer buffer = reader.buffer;
+            buffer.position(reader.recordStart());
+            Decoder decoder = new Decoder();
+            for (int i = 0; i < count; i++) {
+                books.add(decoder.readBook(buffer));
+            }
+            return books;
+        }
+    }
+
+    /**
+     * Открывает снимок для чтения записей по номеру.
+     *
+     * @param path файл снимка.
+     * @return читатель снимка.
+     * @throws IOException если файл не удалось прочитать или это не снимок книг.
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Декодер записей с переиспользуемым буфером для байтов строк.
+     */
+    private static class Decoder {
+        private byte[] scratch = new byte[256];
+
+        Book readBook(ByteBuffer buffer) {
+            int id = buffer.getInt();
+            String title = getString(buffer);
+            String author = getString(buffer);
+            String description = getString(buffer);
+            return new Book(id, title, author, description);
+        }
+
+        private String getString(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Читатель снимка, отображенного в память. Поддерживает чтение записи по номеру.
+     * Снимок больше 2 ГБ не поддерживается.
+     */
+    public static class Reader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int count;
+
+        private Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE) {
+                    throw new IOException("Not a book snapshot: " + path);
+                }
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Book snapshot is larger than 2 GB: " + path);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a book snapshot: " + path);
+                }
+                int version = buffer.getInt(4);
+                if (version != VERSION) {
+                    throw new IOException("Unsupported book snapshot version " + version + ": " + path);
+                }
+                count = buffer.getInt(8);
+                if (count < 0 || HEADER_SIZE + (long) count * Long.BYTES > size) {
+                    throw new IOException("Corrupted book snapshot header: " + path);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Возвращает количество книг в снимке.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Читает книгу по номеру записи.
+         *
+         * @param index номер записи от 0 до {@link #count()}.
+         */
+        public Book get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            long offset = buffer.getLong(HEADER_SIZE + index * Long.BYTES);
+            return new Decoder().readBook(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position((int) offset));
+        }
+
+        private int recordStart() {
+            return count == 0 ? HEADER_SIZE : (int) buffer.getLong(HEADER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.util.List;
+
+/**
+ * Слушатель изменений книг в {@link BookRepository}.
+ * Позволяет индексам и кешам обновляться по месту, а не перестраиваться при каждом изменении.
+ * Методы вызываются под блокировкой репозитория сразу после изменения данных в памяти.
+ */
+public interface BookChangeListener {
+
+    /**
+     * Очередь индексов: они уведомляются первыми.
+     */
+    int INDEX_PHASE = 0;
+
+    /**
+     * Очередь кешей результатов: они уведомляются после того, как все индексы уже обновлены.
+     */
+    int CACHE_PHASE = 1;
+
+    /**
+     * Возвращает очередь, в которой слушатель получает уведомления: слушатели меньшей очереди
+     * уведомляются раньше, внутри очереди - в порядке подписки.
+     */
+    default int phase() {
+        return INDEX_PHASE;
+    }
+
+    /**
+     * Вызывается после полной загрузки книг из файла.
+     *
+     * @param books все книги в порядке файла.
+     */
+    void onReload(List<Book> books);
+
+    /**
+     * Вызывается после добавления или изменения книги.
+     *
+     * @param previous книга до изменения или null, если книга новая.
+     * @param current  книга после изменения.
+     */
+    void onUpsert(Book previous, Book current);
+
+    /**
+     * Вызывается после удаления книги.
+     *
+     * @param removed удаленная книга.
+     */
+    void onDelete(Book removed);
+
+    /**
+     * Вызывается один раз после пакетного изменения книг.
+     * По умолчанию передает изменения по одному в {@link #onUpsert} и {@link #onDelete}.
+     *
+     * @param previous книги до изменения, null для новых книг.
+     * @param current  книги после изменения в том же порядке, null для удаленных книг.
+     */
+    default void onBatch(List<Book> previous, List<Book> current) {
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i) == null) {
+                onDelete(previous.get(i));
+            } else {
+                onUpsert(previous.get(i), current.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Следит за файлом снимка через {@link WatchService} и сообщает об его изменениях.
+ * <p>
+ * Отслеживается каталог файла: создание (в том числе атомарное переименование поверх), изменение
+ * и удаление файла с нужным именем, остальные файлы каталога (журналы, временные файлы) не учитываются.
+ * Каждое изменение увеличивает {@link #generation() поколение}, поэтому читателям не нужно
+ * запрашивать у файловой системы дату и размер файла при каждом обращении: пока поколение
+ * не изменилось, файл тот же. Поколение увеличивается сразу при получении события, а обработчик
+ * вызывается в потоке наблюдателя один раз для изменений, пришедших подряд в течение {@code debounceMillis}.
+ * <p>
+ * Если очередь событий переполнилась, это тоже считается изменением. Если каталог перестал
+ * отслеживаться (удален или недоступен), {@link #isActive()} возвращает false, и читатель
+ * должен проверять файл сам.
+ */
+public class BookFileWatcher implements Closeable {
+
+    private final Path fileName;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private volatile long generation;
+    private volatile boolean active = true;
+    private volatile boolean closed;
+
+    /**
+     * @param file           отслеживаемый файл, его каталог должен существовать.
+     * @param debounceMillis сколько ждать следующих событий перед вызовом обработчика.
+     * @param onChange       обработчик изменений, вызывается в потоке наблюдателя.
+     * @throws IOException если каталог не удалось поставить на наблюдение.
+     */
+    public BookFileWatcher(Path file, long debounceMillis, Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.fileName = absolute.getFileName();
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            absolute.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "book-file-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Возвращает номер последнего замеченного изменения файла.
+     * Номер нужно прочитать до проверки файла, чтобы изменение во время проверки не потерялось.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Возвращает true, пока каталог файла отслеживается и изменения не пропускаются.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        active = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Error closing file watcher: " + e.getMessage());
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (active && !closed) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key);
+                // следующие события одной записи объединяются с первым
+                WatchKey next;
+                while ((next = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(next);
+                }
+                if (closed) {
+                    return;
+                }
+                if (changed) {
+                    notifyChange();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // наблюдатель закрыт
+        }
+    }
+
+    /**
+     * Забирает события ключа.
+     *
+     * @return true, если среди событий есть изменение отслеживаемого файла.
+     */
+    private boolean drain(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            // каталог больше не отслеживается, читатели возвращаются к проверке файла
+            active = false;
+            changed = true;
+        }
+        if (changed) {
+            // поколение меняется сразу, не дожидаясь обработчика, чтобы читатели проверили файл сами
+            generation++;
+        }
+        return changed;
+    }
+
+    private void notifyChange() {
+        try {
+            onChange.run();
+        } catch (RuntimeException e) {
+            System.err.println("Error reloading watched file: " + e.getMessage());
+        }
+    }
+}
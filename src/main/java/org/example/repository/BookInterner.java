@@ -0,0 +1,80 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+/**
+ * Словари названий и авторов, через которые проходят книги при чтении каталога.
+ * Авторы и названия (у переизданий) в каталоге повторяются, а каждая прочитанная строка файла
+ * создает свои экземпляры строк. Интернирование оставляет в памяти по одному экземпляру
+ * каждого повторяющегося значения, а {@link OffHeapBookMap} хранит вместо них номера в словаре.
+ */
+public class BookInterner {
+
+    /**
+     * Интернирование выключено: строки остаются как есть.
+     */
+    public static final BookInterner NONE = new BookInterner(null, null);
+
+    private final StringDictionary titles;
+    private final StringDictionary authors;
+
+    /**
+     * @param titles  словарь названий или null, если названия не интернируются.
+     * @param authors словарь авторов или null, если авторы не интернируются.
+     */
+    public BookInterner(StringDictionary titles, StringDictionary authors) {
+        this.titles = titles;
+        this.authors = authors;
+    }
+
+    public String title(String title) {
+        return titles == null ? title : titles.intern(title);
+    }
+
+    public String author(String author) {
+        return authors == null ? author : authors.intern(author);
+    }
+
+    /**
+     * Заменяет название и автора книги экземплярами из словарей.
+     *
+     * @return та же книга.
+     */
+    public Book intern(Book book) {
+        book.setTitle(title(book.getTitle()));
+        book.setAuthor(author(book.getAuthor()));
+        return book;
+    }
+
+    /**
+     * Возвращает номер названия в словаре или {@link StringDictionary#ABSENT}, не добавляя его:
+     * книга уже прошла через {@link #intern(Book)}, и повторная проверка не должна считаться второй встречей.
+     */
+    public int titleId(String title) {
+        return titles == null ? StringDictionary.ABSENT : titles.find(title);
+    }
+
+    /**
+     * Возвращает номер автора в словаре или {@link StringDictionary#ABSENT}, не добавляя его:
+     * книга уже прошла через {@link #intern(Book)}, и повторная проверка не должна считаться второй встречей.
+     */
+    public int authorId(String author) {
+        return authors == null ? StringDictionary.ABSENT : authors.find(author);
+    }
+
+    public String titleOf(int id) {
+        return titles.valueOf(id);
+    }
+
+    public String authorOf(int id) {
+        return authors.valueOf(id);
+    }
+
+    public int titleCount() {
+        return titles == null ? 0 : titles.size();
+    }
+
+    public int authorCount() {
+        return authors == null ? 0 : authors.size();
+    }
+}
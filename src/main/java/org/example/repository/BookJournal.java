@@ -0,0 +1,326 @@
+package org.example.repository;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.Getter;
+import org.example.model.Book;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Журнал изменений книг, который ведется рядом с CSV файлом.
+ * Каждое изменение (добавление, редактирование или удаление книги) дописывается
+ * в конец журнала одной короткой записью, поэтому стоимость изменения не зависит от размера каталога.
+ * При сжатии текущий журнал переименовывается в {@code .old}, а после записи нового снимка
+ * становится журналом {@code .prev}: в нем изменения между предыдущим поколением снимка ({@link SnapshotFile})
+ * и текущим, поэтому при поврежденном снимке каталог восстанавливается из предыдущего поколения без потерь.
+ * Записи можно дописывать из нескольких потоков: запись кодируется в вызывающем потоке,
+ * а в файл попадает целиком через {@link GroupCommitWriter}, который объединяет записи разных потоков в пачки.
+ */
+public class BookJournal implements Closeable {
+
+    /**
+     * Добавление или изменение книги.
+     */
+    public static final String UPSERT = "U";
+
+    /**
+     * Удаление книги.
+     */
+    public static final String DELETE = "D";
+
+    private final Path journalPath;
+    private final Path rotatedPath;
+    private final Path previousPath;
+
+    private final CsvMapper mapper = new CsvMapper();
+    private final CsvSchema schema = CsvSchema.builder()
+            .addColumn("op")
+            .addColumn("id")
+            .addColumn("title")
+            .addColumn("author")
+            .addColumn("description")
+            .setUseHeader(false)
+            .setQuoteChar('"')
+            .build();
+    private final ObjectWriter entryWriter = mapper.writerFor(Entry.class).with(schema);
+
+    private final GroupCommitWriter writer;
+    private final BookInterner interner;
+    private int size;
+
+    public BookJournal(Path csvPath) {
+        this(csvPath, 512, 0, GroupCommitWriter.SyncPolicy.NONE, BookInterner.NONE);
+    }
+
+    /**
+     * @param csvPath             файл снимка, журнал ведется рядом с ним.
+     * @param batchSize           максимальное количество записей в одной пачке.
+     * @param flushIntervalMicros сколько ждать набора пачки, 0 - писать сразу все, что накопилось.
+     * @param syncPolicy          когда сбрасывать журнал на диск.
+     * @param interner            словари для названий и авторов книг, прочитанных из журнала.
+     */
+    public BookJournal(Path csvPath, int batchSize, long flushIntervalMicros, GroupCommitWriter.SyncPolicy syncPolicy,
+                       BookInterner interner) {
+        this.journalPath = csvPath.resolveSibling(csvPath.getFileName() + ".log");
+        this.rotatedPath = csvPath.resolveSibling(csvPath.getFileName() + ".log.old");
+        this.previousPath = csvPath.resolveSibling(csvPath.getFileName() + ".log.prev");
+        this.writer = new GroupCommitWriter(journalPath, batchSize, flushIntervalMicros, syncPolicy,
+                "book-journal-writer");
+        this.interner = interner;
+    }
+
+    /**
+     * Дописывает в журнал добавление или изменение книги.
+     *
+     * @param book книга в новом состоянии.
+     * @return future с количеством записанных байтов, завершается, когда запись попала в журнал.
+     */
+    public CompletableFuture<Integer> appendUpsert(Book book) {
+        return append(new Entry(UPSERT, book.getId(), book.getTitle(), book.getAuthor(), book.getDescription()));
+    }
+
+    /**
+     * Дописывает в журнал удаление книги.
+     *
+     * @param id ID удаленной книги.
+     * @return future с количеством записанных байтов, завершается, когда запись попала в журнал.
+     */
+    public CompletableFuture<Integer> appendDelete(int id) {
+        return append(new Entry(DELETE, id, null, null, null));
+    }
+
+    /**
+     * Дописывает в журнал изменения нескольких книг одной записью в файл,
+     * поэтому пакет попадает на диск за одну запись и один fsync.
+     *
+     * @param upserts    книги в новом состоянии.
+     * @param deletedIds ID удаленных книг.
+     * @return future с количеством записанных байтов, завершается, когда весь пакет попал в журнал.
+     */
+    public CompletableFuture<Integer> appendBatch(List<Book> upserts, int[] deletedIds) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * (upserts.size() + deletedIds.length) + 16);
+        try {
+            for (Book book : upserts) {
+                batch.write(entryWriter.writeValueAsBytes(
+                        new Entry(UPSERT, book.getId(), book.getTitle(), book.getAuthor(), book.getDescription())));
+            }
+            for (int id : deletedIds) {
+                batch.write(entryWriter.writeValueAsBytes(new Entry(DELETE, id, null, null, null)));
+            }
+        } catch (IOException e) {
+            throw new BookWriteException("Error writing to journal file: " + e.getMessage(), e);
+        }
+        byte[] bytes = batch.toByteArray();
+        synchronized (this) {
+            size += upserts.size() + deletedIds.length;
+        }
+        return writer.append(bytes).thenApply(written -> bytes.length);
+    }
+
+    /**
+     * Применяет записи из журналов (сначала из {@code .old}, затем из текущего) к книгам, загруженным из снимка.
+     *
+     * @param books книги из снимка по ID, изменяются на месте.
+     * @return количество примененных записей.
+     */
+    public synchronized int replay(BookMap books) {
+        return replay(books, false);
+    }
+
+    /**
+     * Применяет записи журналов к книгам, загруженным из снимка или из его предыдущего поколения.
+     *
+     * @param books                книги из снимка по ID, изменяются на месте.
+     * @param fromPreviousSnapshot книги загружены из предыдущего поколения: сначала применяется журнал {@code .prev}.
+     * @return количество примененных записей.
+     */
+    public synchronized int replay(BookMap books, boolean fromPreviousSnapshot) {
+        writer.awaitWritten();
+        int applied = fromPreviousSnapshot ? replay(previousPath, books) : 0;
+        applied += replay(rotatedPath, books);
+        applied += replay(journalPath, books);
+        size = applied;
+        return applied;
+    }
+
+    private int replay(Path path, BookMap books) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        List<Entry> applied = new ArrayList<>();
+        boolean broken = false;
+        try (MappingIterator<Entry> entries = mapper.readerFor(Entry.class).with(schema).readValues(path.toFile())) {
+            while (entries.hasNext()) {
+                Entry entry;
+                try {
+                    entry = entries.next();
+                } catch (RuntimeException e) {
+                    System.err.println("Error reading journal entry: " + e.getMessage());
+                    broken = true;
+                    break;
+                }
+                if (DELETE.equals(entry.getOp())) {
+                    books.remove(entry.getId());
+                } else {
+                    books.put(entry.getId(), new Book(entry.getId(), interner.title(entry.getTitle()),
+                            interner.author(entry.getAuthor()), entry.getDescription()));
+                }
+                applied.add(entry);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading journal file: " + e.getMessage(), e);
+        }
+        if (broken) {
+            truncate(path, applied);
+        }
+        return applied.size();
+    }
+
+    /**
+     * Переписывает журнал без недописанной после сбоя записи,
+     * чтобы новые записи не оказались внутри незакрытых кавычек.
+     */
+    private void truncate(Path path, List<Entry> entries) {
+        closeWriter();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp.toFile()), StandardCharsets.UTF_8)) {
+            entryWriter.writeValues(writer).writeAll(entries);
+        } catch (IOException e) {
+            throw new BookWriteException("Error writing to journal file: " + e.getMessage(), e);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new BookWriteException("Error replacing journal file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Переименовывает текущий журнал в {@code .old} и начинает новый.
+     * Вызывается перед записью снимка, чтобы изменения во время сжатия попадали в новый журнал.
+     */
+    public synchronized void rotate() {
+        closeWriter();
+        try {
+            if (Files.exists(rotatedPath)) {
+                // предыдущее сжатие не завершилось, его записи еще не попали в снимок
+                try (OutputStream rotated = Files.newOutputStream(rotatedPath, StandardOpenOption.APPEND)) {
+                    if (Files.exists(journalPath)) {
+                        Files.copy(journalPath, rotated);
+                    }
+                }
+                Files.deleteIfExists(journalPath);
+            } else if (Files.exists(journalPath)) {
+                Files.move(journalPath, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new BookWriteException("Error rotating journal file: " + e.getMessage(), e);
+        }
+        size = 0;
+    }
+
+    /**
+     * Переносит журнал {@code .old}, записи которого уже вошли в снимок, в журнал {@code .prev}.
+     *
+     * @param newGeneration прежний снимок стал предыдущим поколением: журнал {@code .prev} заменяется.
+     *                      Иначе предыдущее поколение осталось прежним, и записи дописываются к журналу {@code .prev}.
+     */
+    public synchronized void retireRotated(boolean newGeneration) {
+        try {
+            if (newGeneration) {
+                if (Files.exists(rotatedPath)) {
+                    Files.move(rotatedPath, previousPath, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.deleteIfExists(previousPath);
+                }
+            } else if (Files.exists(rotatedPath)) {
+                try (OutputStream previous = Files.newOutputStream(previousPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND)) {
+                    Files.copy(rotatedPath, previous);
+                }
+                Files.delete(rotatedPath);
+            }
+        } catch (IOException e) {
+            throw new BookWriteException("Error retiring journal file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Возвращает количество записей в журнале, которые еще не вошли в снимок.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() {
+        writer.close();
+    }
+
+    private CompletableFuture<Integer> append(Entry entry) {
+        byte[] line;
+        try {
+            line = entryWriter.writeValueAsBytes(entry);
+        } catch (IOException e) {
+            throw new BookWriteException("Error writing to journal file: " + e.getMessage(), e);
+        }
+        synchronized (this) {
+            size++;
+        }
+        return writer.append(line).thenApply(written -> line.length);
+    }
+
+    private void closeWriter() {
+        writer.closeFile();
+    }
+
+    /**
+     * Одна запись журнала.
+     */
+    @Getter
+    public static class Entry {
+
+        @JsonProperty("op")
+        private final String op;
+
+        @JsonProperty("id")
+        private final int id;
+
+        @JsonProperty("title")
+        private final String title;
+
+        @JsonProperty("author")
+        private final String author;
+
+        @JsonProperty("description")
+        private final String description;
+
+        @JsonCreator
+        public Entry(
+                @JsonProperty("op") String op,
+                @JsonProperty("id") int id,
+                @JsonProperty("title") String title,
+                @JsonProperty("author") String author,
+                @JsonProperty("description") String description) {
+            this.op = op;
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.description = description;
+        }
+    }
+}
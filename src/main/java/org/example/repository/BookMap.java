@@ -0,0 +1,72 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Каталог книг по ID в памяти с обходом в порядке добавления.
+ * Реализации: {@link IntBookMap} хранит объекты {@link Book} в куче,
+ * {@link OffHeapBookMap} хранит поля книг вне кучи и создает объекты книг только при чтении.
+ * Реализации не потокобезопасны, доступ из многих потоков организует {@link StampedBookMap}.
+ */
+public interface BookMap {
+
+    /**
+     * Возвращает книгу по ID или null, если ее нет.
+     */
+    Book get(int id);
+
+    /**
+     * Проверяет, есть ли книга с таким ID.
+     */
+    boolean containsKey(int id);
+
+    /**
+     * Добавляет или заменяет книгу вместе с ее версией. Замененная книга остается на своем месте в порядке обхода.
+     *
+     * @return предыдущая книга с этим ID или null.
+     */
+    Book put(int id, Book book);
+
+    /**
+     * Удаляет книгу по ID.
+     *
+     * @return удаленная книга или null, если ее не было.
+     */
+    Book remove(int id);
+
+    int size();
+
+    boolean isEmpty();
+
+    void clear();
+
+    /**
+     * Обходит книги в порядке добавления.
+     */
+    void forEach(Consumer<Book> action);
+
+    /**
+     * Возвращает список книг в порядке добавления, который не меняется при последующих изменениях карты.
+     */
+    List<Book> values();
+
+    /**
+     * Возвращает поток книг в порядке добавления без копирования.
+     * Поток слабо согласован: он видит книги на момент вызова, удаленные позже книги пропускаются,
+     * а изменения структуры (перестроение, очистка) на него не влияют.
+     * Вызов должен выполняться под той же блокировкой, что и изменения карты.
+     */
+    Stream<Book> stream();
+
+    /**
+     * Назначает всем книгам новые версии в порядке обхода.
+     *
+     * @param versions источник версий.
+     */
+    void assignVersions(LongSupplier versions);
+}
@@ -1,22 +1,184 @@
 package org.example.repository;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.RequiredArgsConstructor;
+import org.example.metrics.BookMetrics;
 import org.example.model.Book;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Репозиторий для управления книгами в CSV файле.
  * Предоставляет методы для добавления, редактирования, чтения и удаления книг.
+ * Книги загружаются из файла один раз и хранятся в памяти по ID, изменения сразу записываются на диск.
+ * Если файл изменили извне (по дате изменения или размеру), он перечитывается.
+ * <p>
+ * В режиме журнала ({@code storage.journal.enabled}) изменения дописываются в {@link BookJournal},
+ * а CSV файл служит снимком, который периодически пересобирается в фоне.
+ * <p>
+ * При {@code storage.format=binary} снимком служит {@link BinaryBookSnapshot} в файле books.bin,
+ * который при первом запуске создается из CSV файла. CSV остается доступен через импорт и экспорт.
+ * <p>
+ * Репозиторий потокобезопасен. Чтение идет без блокировок ({@link StampedBookMap}).
+ * В режиме журнала изменения одной книги выполняются по очереди под блокировкой ее полосы ({@link StripedLocks}),
+ * а изменения разных книг - параллельно. Перечитывание файла, сжатие журнала и полная перезапись снимка
+ * выполняются монопольно. Изменение, основанное на устаревшей {@link Book#getVersion() версии} книги,
+ * отклоняется с {@link ConcurrentModificationException}.
+ * <p>
+ * При {@code storage.engine=offheap} книги хранятся в {@link OffHeapBookMap} вне кучи,
+ * что уменьшает кучу и паузы сборщика мусора на очень больших каталогах.
+ * <p>
+ * Названия и авторы книг при чтении и сохранении проходят через {@link BookInterner}
+ * ({@code storage.intern.*}), поэтому повторяющиеся значения хранятся в памяти одним экземпляром.
+ * <p>
+ * Записи журнала и строки, дописываемые в CSV файл без журнала, проходят через {@link GroupCommitWriter}:
+ * записи параллельных изменений попадают на диск общей пачкой с одним fsync ({@code storage.write.*}).
+ * Изменение одной книги становится видно читателям и слушателям только после записи в журнал.
+ * <p>
+ * Снимок целиком пишется через {@link SnapshotFile}: во временный файл с контрольной суммой в трейлере,
+ * со сбросом на диск и атомарным переименованием, поэтому сбой при записи не портит каталог.
+ * При загрузке контрольная сумма проверяется, и если снимок оборван, каталог загружается
+ * из предыдущего поколения ({@code .prev}) с журналами, а поврежденный файл переименовывается в {@code .corrupt}.
+ * Целый снимок с несовпавшей суммой считается отредактированным извне: он загружается как есть
+ * и запечатывается заново при следующей записи снимка.
+ * За файлом снимка следит {@link BookFileWatcher}: изменения извне загружаются без обращения к каталогу,
+ * а строки, дописанные в конец CSV файла, дочитываются без разбора всего файла.
  */
 @Repository
+@RequiredArgsConstructor
 public class BookRepository {
-    private final String filePath = "src/main/resources/books.csv";
+    @Value("${storage.file:src/main/resources/books.csv}")
+    private String filePath;
+
+    @Value("${storage.format:csv}")
+    private String format;
+
+    @Value("${storage.reader:mapped}")
+    private String reader;
+
+    @Value("${storage.import.parallelism:0}")
+    private int importParallelism;
+
+    @Value("${storage.import.parallelThreshold:33554432}")
+    private long parallelLoadThreshold;
+
+    @Value("${storage.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Value("${storage.journal.compactionIntervalSeconds:30}")
+    private long compactionIntervalSeconds;
+
+    @Value("${storage.journal.compactionThreshold:10000}")
+    private int compactionThreshold;
+
+    @Value("${storage.engine:heap}")
+    private String engine;
+
+    @Value("${storage.engine.segmentSize:67108864}")
+    private int segmentSize;
+
+    @Value("${storage.intern.titles:true}")
+    private boolean internTitles;
+
+    @Value("${storage.intern.authors:true}")
+    private boolean internAuthors;
+
+    @Value("${storage.intern.maxEntries:1000000}")
+    private int internMaxEntries;
+
+    @Value("${storage.intern.maxLength:256}")
+    private int internMaxLength;
+
+    @Value("${storage.write.batchSize:512}")
+    private int writeBatchSize;
+
+    @Value("${storage.write.flushIntervalMicros:0}")
+    private long writeFlushIntervalMicros;
+
+    @Value("${storage.write.sync:none}")
+    private String writeSync;
+
+    @Value("${storage.snapshot.fsync:true}")
+    private boolean snapshotFsync;
+
+    @Value("${storage.watch.enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${storage.watch.debounceMillis:20}")
+    private long watchDebounceMillis;
+
+    private static final int ID_LOCK_STRIPES = 256;
+
+    /**
+     * Сколько последних байтов загруженной части CSV файла сравнивается, чтобы отличить
+     * дописывание строк в конец от замены файла.
+     */
+    private static final int TAIL_CHECK_BYTES = 4096;
+
+    private StampedBookMap books;
+    private volatile long loadedLastModified = -1;
+    private volatile long loadedLength = -1;
+    private Object loadedFileKey;
+    private byte[] loadedTail = new byte[0];
+
+    /**
+     * Поколение {@link BookFileWatcher}, для которого файл уже проверен: пока оно не изменилось,
+     * дата и размер файла при чтении не запрашиваются.
+     */
+    private volatile long checkedGeneration = -1;
+    private BookFileWatcher watcher;
+
+    /**
+     * Данные в памяти разошлись с диском (запись не удалась), поэтому при следующем обращении
+     * каталог перечитывается целиком, даже если файл не изменился и наблюдатель не сообщал об изменениях.
+     */
+    private volatile boolean reloadRequired;
+
+    /**
+     * Изменения отдельных книг берут эту блокировку на чтение, а операции со всем каталогом - на запись.
+     */
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final StripedLocks idLocks = new StripedLocks(ID_LOCK_STRIPES);
+
+    private final BookMetrics metrics;
+
+    private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private BookInterner interner;
+    private BookJournal journal;
+    private ScheduledExecutorService compactor;
+
+    /**
+     * Дописывает строки в CSV файл без журнала. Создается при первом добавлении книги.
+     */
+    private GroupCommitWriter csvAppender;
 
     CsvMapper mapper = new CsvMapper();
     CsvSchema schema = CsvSchema.builder()
@@ -26,63 +188,1156 @@ public class BookRepository {
             .addColumn("description")
             .setUseHeader(true)
             .setQuoteChar('"')
+            .setAllowComments(true)
             .build();
+    private final ObjectWriter rowWriter = mapper.writer(schema.withoutHeader());
+    private final ObjectWriter headerRowWriter = mapper.writer(schema);
+
+    /**
+     * Загружает книги из CSV файла при старте приложения и запускает фоновое сжатие журнала.
+     */
+    @PostConstruct
+    public void init() {
+        storeLock.writeLock().lock();
+        try {
+            initStorage();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    private void initStorage() {
+        interner = new BookInterner(
+                internTitles ? new StringDictionary(internMaxEntries, internMaxLength) : null,
+                internAuthors ? new StringDictionary(internMaxEntries, internMaxLength) : null);
+        books = new StampedBookMap(newBookMap(16));
+        if (isBinary() && !new File(binaryFilePath()).exists() && new File(filePath).exists()) {
+            Path binary = Path.of(binaryFilePath());
+            writeSnapshot(loadCsv(new File(filePath)), SnapshotFile.tempOf(binary));
+            publishSnapshot(binary);
+        }
+        if (journalEnabled) {
+            journal = new BookJournal(Path.of(snapshotPath()), writeBatchSize, writeFlushIntervalMicros, syncPolicy(),
+                    interner);
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "book-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactQuietly,
+                    compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        }
+        if (watchEnabled) {
+            startWatcher();
+        }
+        if (new File(snapshotPath()).exists()) {
+            refreshIfModified();
+        }
+    }
+
+    /**
+     * Запускает наблюдение за файлом снимка: изменения извне загружаются сразу, а не при следующем чтении,
+     * поэтому индексы и кеш не отдают устаревшие данные. Если наблюдение недоступно,
+     * файл проверяется при каждом чтении, как без него.
+     */
+    private void startWatcher() {
+        Path snapshot = Path.of(snapshotPath()).toAbsolutePath();
+        if (snapshot.getParent() == null || !Files.isDirectory(snapshot.getParent())) {
+            return;
+        }
+        try {
+            watcher = new BookFileWatcher(snapshot, watchDebounceMillis, this::refreshIfModified);
+        } catch (IOException e) {
+            System.err.println("Error watching book file " + snapshot + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает фоновое сжатие и переносит оставшиеся записи журнала в CSV файл.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (csvAppender != null) {
+            csvAppender.close();
+        }
+        if (compactor == null) {
+            return;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compact();
+        storeLock.writeLock().lock();
+        try {
+            journal.close();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
 
     /**
      * Добавляет книгу в CSV файл.
+     * С журналом книга появляется в каталоге и у слушателей только после того, как ее запись попала в журнал
+     * (и на диск при {@code storage.write.sync=batch} или {@code record}), поэтому читатели не увидят книгу,
+     * которая пропадет после сбоя. Записи потоков, добавляющих книги одновременно, уходят на диск общими пачками.
      *
      * @param book Книга для добавления.
      * @return Добавленная книга.
-     * @throws RuntimeException если произошла ошибка при записи в CSV файл.
+     * @throws DuplicateBookException если книга с таким ID уже есть.
+     * @throws BookWriteException если произошла ошибка при записи в CSV файл или журнал.
      */
     public Book addBook(Book book) {
+        refreshIfModified();
+        interner.intern(book);
+        if (journalEnabled) {
+            withIdLock(book.getId(), () -> {
+                requireUniqueId(book.getId());
+                await(appendUpsert(book));
+                books.put(book);
+                fireUpsert(null, book);
+                return null;
+            });
+            compactIfNeeded();
+            return book;
+        }
+        return exclusively(() -> addBookToFile(book));
+    }
+
+    private Book addBookToFile(Book book) {
+        if (isBinary()) {
+            requireUniqueId(book.getId());
+            writeBooks(valuesWith(Collections.singletonMap(book.getId(), book)));
+            books.put(book);
+            fireUpsert(null, book);
+            return book;
+        }
+
         File csvFile = new File(filePath);
         boolean isNewFile = !csvFile.exists();
+        long lengthBefore = csvFile.length();
+        if (isNewFile) {
+            books.replace(newBookMap(16));
+            fireReload();
+        } else {
+            requireUniqueId(book.getId());
+        }
 
-        try (FileWriter writer = new FileWriter(csvFile, true)) {
-            CsvSchema writeSchema = schema.withoutHeader();
-            if (isNewFile) {
-                writeSchema = schema;
-            }
-            mapper.writer(writeSchema).writeValue(writer, book);
-            return book;
+        byte[] row;
+        try {
+            row = (isNewFile ? headerRowWriter : rowWriter).writeValueAsBytes(book);
         } catch (IOException e) {
-            throw new RuntimeException("Error writing to CSV file: " + e.getMessage(), e);
+            throw new BookWriteException("Error writing to CSV file: " + e.getMessage(), e);
         }
+        if (csvAppender == null) {
+            csvAppender = new GroupCommitWriter(csvFile.toPath(), writeBatchSize, 0, syncPolicy(), "book-csv-writer");
+        } else if (isNewFile) {
+            // файл удалили, открытый канал пишет в удаленный файл
+            csvAppender.closeFile();
+        }
+        metrics.time("BookRepository.appendCsv", () -> await(csvAppender.append(row)));
+        metrics.recordWrite(1, csvFile.length() - lengthBefore);
+        books.put(book);
+        rememberFileState(csvFile);
+        fireUpsert(null, book);
+        return book;
     }
 
     /**
-     * Записывает в файл список книг с измененной книгой
+     * Сохраняет измененную книгу.
+     * Если у книги указана {@link Book#getVersion() версия}, она должна совпадать с версией в каталоге.
      *
-     * @param updatedBooks Список книг с обновленной книгой.
+     * @param updatedBook Книга с новыми данными.
+     * @return Предыдущее состояние книги или null, если книги с таким ID нет (тогда ничего не меняется).
+     * @throws ConcurrentModificationException если книгу изменили после чтения версии.
+     * @throws BookWriteException если изменение не удалось записать.
      */
-    public void editBook(List<Book> updatedBooks) {
-        writeBooks(updatedBooks);
+    public Book editBook(Book updatedBook) {
+        refreshIfModified();
+        interner.intern(updatedBook);
+        if (journalEnabled) {
+            Book previous = withIdLock(updatedBook.getId(), () -> {
+                Book current = currentVersionOf(updatedBook.getId(), updatedBook.getVersion());
+                if (current != null) {
+                    await(appendUpsert(updatedBook));
+                    books.put(updatedBook);
+                    fireUpsert(current, updatedBook);
+                }
+                return current;
+            });
+            compactIfNeeded();
+            return previous;
+        }
+        return exclusively(() -> {
+            Book current = currentVersionOf(updatedBook.getId(), updatedBook.getVersion());
+            if (current != null) {
+                writeBooks(valuesWith(Collections.singletonMap(updatedBook.getId(), updatedBook)));
+                books.put(updatedBook);
+                fireUpsert(current, updatedBook);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Возвращает книги каталога с примененными изменениями, не меняя сам каталог.
+     * Без журнала по этому списку сначала пишется снимок, и только после успешной записи меняется память,
+     * поэтому ошибка записи не оставляет в памяти несохраненных изменений.
+     *
+     * @param changes новые книги по ID, null - книга удалена. Книги с новыми ID добавляются в конец в порядке изменений.
+     */
+    private List<Book> valuesWith(Map<Integer, Book> changes) {
+        List<Book> current = books.values();
+        List<Book> result = new ArrayList<>(current.size() + changes.size());
+        for (Book book : current) {
+            Book changed = changes.containsKey(book.getId()) ? changes.get(book.getId()) : book;
+            if (changed != null) {
+                result.add(changed);
+            }
+        }
+        changes.forEach((id, book) -> {
+            if (book != null && !books.containsKey(id)) {
+                result.add(book);
+            }
+        });
+        return result;
     }
 
     /**
-     * Записывает список книг в CSV файл.
+     * Записывает список книг в файл снимка.
      *
      * @param books Список книг для записи.
-     * @throws RuntimeException если произошла ошибка при записи в CSV файл.
+     * @throws BookWriteException если произошла ошибка при записи в файл.
      */
     private void writeBooks(List<Book> books) {
-        try (Writer writer = new OutputStreamWriter(new FileOutputStream(filePath), "UTF-8")) {
+        File snapshot = new File(snapshotPath());
+        metrics.time("BookRepository.writeBooks", () -> {
+            writeSnapshot(books, SnapshotFile.tempOf(snapshot.toPath()));
+            publishSnapshot(snapshot.toPath());
+            return null;
+        });
+        if (csvAppender != null) {
+            // открытый канал пишет в прежний файл, который стал предыдущим поколением
+            csvAppender.closeFile();
+        }
+        metrics.recordWrite(books.size(), snapshot.length());
+        rememberFileState(snapshot);
+    }
+
+    private CompletableFuture<Integer> appendUpsert(Book book) {
+        return track(System.nanoTime(), 1, journal.appendUpsert(book));
+    }
+
+    private CompletableFuture<Integer> appendDelete(int id) {
+        return track(System.nanoTime(), 1, journal.appendDelete(id));
+    }
+
+    /**
+     * Записывает время от постановки записи журнала в очередь до ее записи в файл.
+     * Если запись не удалась, данные в памяти расходятся с диском, поэтому при следующем обращении
+     * каталог перечитывается из снимка и журнала.
+     */
+    private CompletableFuture<Integer> track(long started, int rows, CompletableFuture<Integer> written) {
+        return written.whenComplete((bytes, error) -> {
+            metrics.method("BookJournal.commit").record(System.nanoTime() - started, error != null);
+            if (error == null) {
+                metrics.recordWrite(rows, bytes);
+            } else {
+                requireReload();
+            }
+        });
+    }
+
+    /**
+     * Ждет завершения записи и пробрасывает ее ошибку без обертки {@link CompletionException}.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Отмечает, что данные в памяти могли разойтись с диском и каталог нужно перечитать при следующем обращении.
+     */
+    private void requireReload() {
+        reloadRequired = true;
+        loadedLength = -1;
+    }
+
+    private GroupCommitWriter.SyncPolicy syncPolicy() {
+        return GroupCommitWriter.SyncPolicy.parse(writeSync);
+    }
+
+    /**
+     * Записывает книги во временный файл в формате снимка ({@code storage.format})
+     * и дописывает трейлер {@link SnapshotFile} с контрольной суммой.
+     */
+    private void writeSnapshot(List<Book> books, Path temp) {
+        if (isBinary()) {
+            try {
+                BinaryBookSnapshot.write(books, temp);
+            } catch (IOException e) {
+                throw new BookWriteException("Error writing book snapshot: " + e.getMessage(), e);
+            }
+        } else {
+            writeCsv(books, temp);
+        }
+        try {
+            SnapshotFile.seal(temp, books.size(), snapshotFsync);
+        } catch (IOException e) {
+            throw new BookWriteException("Error writing book snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Заменяет снимок записанным временным файлом, прежний снимок становится предыдущим поколением.
+     *
+     * @return true, если прежний снимок был и стал предыдущим поколением.
+     */
+    private boolean publishSnapshot(Path target) {
+        try {
+            return SnapshotFile.publish(SnapshotFile.tempOf(target), target, snapshotFsync);
+        } catch (IOException e) {
+            throw new BookWriteException("Error replacing book snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeCsv(List<Book> books, Path target) {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(target.toFile()), "UTF-8")) {
             mapper.writer(schema).writeValues(writer).writeAll(books);
         } catch (IOException e) {
-            throw new RuntimeException("Error writing to CSV file: " + e.getMessage(), e);
+            throw new BookWriteException("Error writing to CSV file: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Читает список книг из CSV файла.
+     * Выгружает текущий каталог в CSV файл.
+     *
+     * @param target CSV файл, перезаписывается.
+     * @throws BookWriteException если произошла ошибка при записи.
+     */
+    public void exportCsv(Path target) {
+        List<Book> exported = readBooks();
+        metrics.time("BookRepository.exportCsv", () -> {
+            writeCsv(exported, target);
+            return null;
+        });
+        metrics.recordWrite(exported.size(), target.toFile().length());
+    }
+
+    /**
+     * Возвращает список книг из памяти, предварительно перечитав CSV файл, если он изменился.
      *
      * @return Список книг.
      * @throws RuntimeException если произошла ошибка при чтении CSV файла.
      */
     public List<Book> readBooks() {
+        refreshIfModified();
+        return books.values();
+    }
+
+    /**
+     * Возвращает поток книг из памяти без копирования всего каталога в список.
+     * Книги, удаленные во время обхода, пропускаются, а добавленные после вызова в поток не попадают.
+     *
+     * @return Поток книг в порядке файла.
+     */
+    public Stream<Book> streamBooks() {
+        refreshIfModified();
+        return books.stream();
+    }
+
+    /**
+     * Возвращает поток книг, читаемых из CSV файла по одной через {@link MappingIterator}.
+     * Поток нужно закрыть, чтобы закрылся файл. Некорректные строки пропускаются с сообщением в System.err.
+     *
+     * @param csvFile CSV файл со строкой заголовка.
+     * @return Поток книг в порядке файла.
+     * @throws RuntimeException если файл не удалось открыть.
+     */
+    public Stream<Book> streamFile(File csvFile) {
+        MappingIterator<Book> iterator;
+        try {
+            iterator = mapper.readerFor(Book.class)
+                    .with(schema)
+                    .readValues(csvFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
+        }
+        Iterator<Book> skippingErrors = new Iterator<>() {
+            private Book next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && iterator.hasNext()) {
+                    try {
+                        next = iterator.next();
+                    } catch (RuntimeException e) {
+                        System.err.println("Error deserializing book: " + e.getMessage());
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Book next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Book book = next;
+                next = null;
+                return book;
+            }
+        };
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(skippingErrors, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Возвращает книгу по ID.
+     *
+     * @param id ID книги.
+     * @return Книга или null, если книги с таким ID нет.
+     */
+    public Book findBookById(int id) {
+        refreshIfModified();
+        return books.get(id);
+    }
+
+    /**
+     * Проверяет, есть ли книга с таким ID.
+     *
+     * @param id ID книги.
+     */
+    public boolean existsById(int id) {
+        refreshIfModified();
+        return books.containsKey(id);
+    }
+
+    /**
+     * Удаляет книгу по ID.
+     *
+     * @param id ID книги для удаления.
+     * @return Удаленная книга или null, если книги с таким ID нет.
+     */
+    public Book deleteBook(int id) {
+        return deleteBook(id, 0);
+    }
+
+    /**
+     * Удаляет книгу по ID, если ее версия не изменилась.
+     *
+     * @param id              ID книги для удаления.
+     * @param expectedVersion версия, которую видел вызывающий, или 0 без проверки.
+     * @return Удаленная книга или null, если книги с таким ID нет.
+     * @throws ConcurrentModificationException если книгу изменили после чтения версии.
+     * @throws BookWriteException если удаление не удалось записать.
+     */
+    public Book deleteBook(int id, long expectedVersion) {
+        refreshIfModified();
+        if (journalEnabled) {
+            Book removed = withIdLock(id, () -> {
+                Book current = currentVersionOf(id, expectedVersion);
+                if (current != null) {
+                    await(appendDelete(id));
+                    books.remove(id);
+                    fireDelete(current);
+                }
+                return current;
+            });
+            compactIfNeeded();
+            return removed;
+        }
+        return exclusively(() -> {
+            Book current = currentVersionOf(id, expectedVersion);
+            if (current != null) {
+                writeBooks(valuesWith(Collections.singletonMap(id, null)));
+                books.remove(id);
+                fireDelete(current);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Добавляет книги одним пакетом. ID проверяются по одному состоянию каталога, пакет записывается на диск
+     * одной записью (в журнал или, без журнала, одной перезаписью снимка), а слушатели получают одно уведомление.
+     * Книга с уже существующим ID, в том числе добавленная раньше в этом же пакете, пропускается.
+     *
+     * @param added книги для добавления.
+     * @return статусы книг в порядке пакета: {@link BatchStatus#APPLIED} или {@link BatchStatus#DUPLICATE_ID}.
+     * @throws BookWriteException если пакет не удалось записать.
+     */
+    public BatchStatus[] addBooks(List<Book> added) {
+        added.forEach(interner::intern);
+        return applyBatch(added.size(), (i, batch) -> {
+            Book book = added.get(i);
+            if (batch.lookup(books, book.getId()) != null) {
+                return BatchStatus.DUPLICATE_ID;
+            }
+            batch.upsert(null, book);
+            return BatchStatus.APPLIED;
+        });
+    }
+
+    /**
+     * Сохраняет измененные книги одним пакетом, как {@link #addBooks(List)}.
+     * Если у книги указана версия, она должна совпадать с версией в каталоге.
+     *
+     * @param updated книги с новыми данными.
+     * @return статусы книг в порядке пакета: {@link BatchStatus#APPLIED}, {@link BatchStatus#NOT_FOUND}
+     * или {@link BatchStatus#VERSION_CONFLICT}.
+     * @throws BookWriteException если пакет не удалось записать.
+     */
+    public BatchStatus[] editBooks(List<Book> updated) {
+        updated.forEach(interner::intern);
+        return applyBatch(updated.size(), (i, batch) -> {
+            Book book = updated.get(i);
+            Book current = batch.lookup(books, book.getId());
+            if (current == null) {
+                return BatchStatus.NOT_FOUND;
+            }
+            if (book.getVersion() != 0 && current.getVersion() != book.getVersion()) {
+                return BatchStatus.VERSION_CONFLICT;
+            }
+            batch.upsert(current, book);
+            return BatchStatus.APPLIED;
+        });
+    }
+
+    /**
+     * Удаляет книги по ID одним пакетом, как {@link #addBooks(List)}.
+     *
+     * @param ids ID книг для удаления.
+     * @return статусы в порядке ID: {@link BatchStatus#APPLIED} или {@link BatchStatus#NOT_FOUND}.
+     * @throws BookWriteException если пакет не удалось записать.
+     */
+    public BatchStatus[] deleteBooks(int[] ids) {
+        return applyBatch(ids.length, (i, batch) -> {
+            Book current = batch.lookup(books, ids[i]);
+            if (current == null) {
+                return BatchStatus.NOT_FOUND;
+            }
+            batch.delete(current);
+            return BatchStatus.APPLIED;
+        });
+    }
+
+    /**
+     * Выполняет шаги пакета монопольно, записывает все изменения одной записью и уведомляет слушателей один раз.
+     * Шаги проверяют книги по каталогу с уже принятыми изменениями пакета, а сам каталог меняется после них:
+     * без журнала - только после записи снимка. Запись в журнал дожидается уже без блокировки,
+     * как и для отдельных изменений.
+     */
+    private BatchStatus[] applyBatch(int size, BatchStep step) {
+        refreshIfModified();
+        BatchStatus[] statuses = new BatchStatus[size];
+        CompletableFuture<Integer> written = exclusively(() -> {
+            Batch batch = new Batch(size);
+            for (int i = 0; i < size; i++) {
+                statuses[i] = step.apply(i, batch);
+            }
+            if (batch.current.isEmpty()) {
+                return CompletableFuture.completedFuture(0);
+            }
+            CompletableFuture<Integer> appended;
+            if (journalEnabled) {
+                appended = track(System.nanoTime(), batch.current.size(),
+                        journal.appendBatch(batch.upserts, batch.deletedIds()));
+            } else {
+                writeBooks(valuesWith(batch.changes));
+                appended = CompletableFuture.completedFuture(0);
+            }
+            for (int i = 0; i < batch.current.size(); i++) {
+                Book book = batch.current.get(i);
+                if (book == null) {
+                    books.remove(batch.previous.get(i).getId());
+                } else {
+                    books.put(book);
+                }
+            }
+            for (BookChangeListener listener : listeners) {
+                listener.onBatch(batch.previous, batch.current);
+            }
+            return appended;
+        });
+        if (journalEnabled) {
+            compactIfNeeded();
+        }
+        await(written);
+        return statuses;
+    }
+
+    /**
+     * Возвращает книги по списку ID в том же порядке, пропуская отсутствующие.
+     *
+     * @param ids ID книг.
+     * @return Список найденных книг.
+     */
+    public List<Book> findBooksByIds(int[] ids) {
+        return books.getAll(ids);
+    }
+
+    /**
+     * Подписывает слушателя на изменения книг и сразу передает ему текущее содержимое репозитория.
+     * Слушатели уведомляются по очередям {@link BookChangeListener#phase()}, поэтому кеш
+     * стирает записи, когда индексы уже обновлены, независимо от порядка подписки.
+     *
+     * @param listener слушатель изменений.
+     */
+    public void addChangeListener(BookChangeListener listener) {
+        exclusively(() -> {
+            int position = listeners.size();
+            while (position > 0 && listeners.get(position - 1).phase() > listener.phase()) {
+                position--;
+            }
+            listeners.add(position, listener);
+            listener.onReload(books.values());
+            return null;
+        });
+    }
+
+    private void requireUniqueId(int id) {
+        if (books.containsKey(id)) {
+            throw new DuplicateBookException(id);
+        }
+    }
+
+    /**
+     * Возвращает текущую книгу, проверив, что ее версия совпадает с ожидаемой.
+     *
+     * @param expectedVersion версия, на основе которой сделано изменение, или 0 без проверки.
+     * @return книга или null, если ее нет.
+     * @throws ConcurrentModificationException если версия книги изменилась.
+     */
+    private Book currentVersionOf(int id, long expectedVersion) {
+        Book current = books.get(id);
+        if (current != null && expectedVersion != 0 && current.getVersion() != expectedVersion) {
+            throw new ConcurrentModificationException("Book with id " + id + " was modified: expected version "
+                    + expectedVersion + ", actual " + current.getVersion());
+        }
+        return current;
+    }
+
+    /**
+     * Выполняет изменение одной книги: под блокировкой ее полосы и общей блокировкой каталога на чтение,
+     * чтобы изменение не попало между снимком каталога и ротацией журнала при сжатии.
+     */
+    private <T> T withIdLock(int id, Supplier<T> action) {
+        Lock idLock = idLocks.lockFor(id);
+        storeLock.readLock().lock();
+        idLock.lock();
+        try {
+            return action.get();
+        } finally {
+            idLock.unlock();
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Выполняет операцию со всем каталогом, когда никакие другие изменения не выполняются.
+     */
+    private <T> T exclusively(Supplier<T> action) {
+        storeLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Загружает книги из большого CSV файла параллельно и добавляет их в каталог.
+     * Книги с уже существующими ID заменяются. После загрузки каталог целиком записывается на диск.
+     *
+     * @param source CSV файл со строкой заголовка.
+     * @return отчет с загруженными книгами и некорректными строками.
+     * @throws RuntimeException если файл не удалось прочитать или записать каталог.
+     */
+    public ParallelCsvImporter.ImportReport importBooks(Path source) {
+        ParallelCsvImporter.ImportReport report;
+        try {
+            report = new ParallelCsvImporter(importParallelism(), interner).importFile(source);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
+        }
+        metrics.recordRead(report.getBooks().size(), report.getBytes());
+        exclusively(() -> {
+            refreshIfModified();
+            for (Book book : report.getBooks()) {
+                books.put(book);
+            }
+            if (!journalEnabled) {
+                writeImported();
+            }
+            fireReload();
+            return null;
+        });
+        compact(true);
+        return report;
+    }
+
+    /**
+     * Добавляет в каталог книги из потока пакетами по {@code batchSize}, поэтому в памяти,
+     * кроме самого каталога, находится не больше одного пакета прочитанных книг.
+     * Книги с уже существующими ID заменяются. Каждый пакет применяется монопольно с одним уведомлением
+     * слушателей, а на диск каталог записывается один раз после загрузки, как в {@link #importBooks(Path)}.
+     *
+     * @param source    книги для загрузки.
+     * @param batchSize количество книг в пакете.
+     * @return количество загруженных книг.
+     * @throws RuntimeException если не удалось прочитать книги или записать каталог.
+     */
+    public long importBooks(Iterator<Book> source, int batchSize) {
+        refreshIfModified();
+        List<Book> chunk = new ArrayList<>(batchSize);
+        long imported = 0;
+        while (source.hasNext()) {
+            chunk.add(interner.intern(source.next()));
+            if (chunk.size() == batchSize) {
+                imported += putBatch(chunk);
+                chunk.clear();
+            }
+        }
+        imported += putBatch(chunk);
+        if (journalEnabled) {
+            compact(true);
+        } else {
+            exclusively(() -> {
+                writeImported();
+                return null;
+            });
+        }
+        return imported;
+    }
+
+    /**
+     * Записывает снимок после загрузки книг без журнала. Загруженные книги уже в памяти, поэтому если запись
+     * не удалась, каталог перечитывается с диска при следующем обращении.
+     */
+    private void writeImported() {
+        try {
+            writeBooks(books.values());
+        } catch (RuntimeException e) {
+            requireReload();
+            throw e;
+        }
+    }
+
+    /**
+     * Добавляет или заменяет книги в памяти без записи на диск и уведомляет слушателей одним пакетом.
+     */
+    private int putBatch(List<Book> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        return exclusively(() -> {
+            Batch batch = new Batch(chunk.size());
+            for (Book book : chunk) {
+                batch.upsert(books.put(book), book);
+            }
+            for (BookChangeListener listener : listeners) {
+                listener.onBatch(batch.previous, batch.current);
+            }
+            return chunk.size();
+        });
+    }
+
+    /**
+     * Переносит записи журнала в новый снимок CSV файла.
+     */
+    public void compact() {
+        compact(false);
+    }
+
+    /**
+     * Переносит записи журнала в новый снимок CSV файла.
+     * Журнал переименовывается под блокировкой, а сам снимок пишется во временный файл без нее,
+     * поэтому изменения во время сжатия не ждут записи всего каталога.
+     *
+     * @param force записать снимок, даже если журнал пуст.
+     */
+    private void compact(boolean force) {
+        List<Book> snapshot = exclusively(() -> {
+            if (journal == null || (!force && journal.size() == 0)) {
+                return null;
+            }
+            refreshIfModified();
+            List<Book> values = books.values();
+            journal.rotate();
+            return values;
+        });
+        if (snapshot == null) {
+            return;
+        }
+
+        Path target = Path.of(snapshotPath());
+        Path temp = SnapshotFile.tempOf(target);
+        metrics.time("BookRepository.compact", () -> {
+            writeSnapshot(snapshot, temp);
+            return null;
+        });
+        metrics.recordWrite(snapshot.size(), temp.toFile().length());
+
+        exclusively(() -> {
+            journal.retireRotated(publishSnapshot(target));
+            rememberFileState(target.toFile());
+            return null;
+        });
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Запускает внеочередное сжатие, если журнал вырос больше порога.
+     */
+    private void compactIfNeeded() {
+        if (journal.size() >= compactionThreshold) {
+            compactor.execute(this::compactQuietly);
+        }
+    }
+
+    /**
+     * Перечитывает CSV файл, если его дата изменения или размер отличаются от загруженных в память.
+     * В режиме журнала поверх файла применяются записи журнала, а отсутствующий файл считается пустым снимком.
+     * Проверка файла выполняется без блокировок, а перечитывание - монопольно.
+     * Если в CSV файл только дописали строки, читается лишь новый хвост файла, а индексы и кеш
+     * обновляются по добавленным книгам. Пока {@link BookFileWatcher} не сообщил об изменении файла,
+     * дата и размер файла не запрашиваются, если только запись на диск не завершилась ошибкой.
+     * Нельзя вызывать, удерживая блокировку отдельной книги.
+     *
+     * @throws RuntimeException если файл не найден или произошла ошибка при чтении.
+     */
+    public void refreshIfModified() {
+        BookFileWatcher fileWatcher = watcher;
+        long generation = fileWatcher == null ? 0 : fileWatcher.generation();
+        if (!reloadRequired && fileWatcher != null && fileWatcher.isActive() && generation == checkedGeneration) {
+            return;
+        }
+        if (!reloadRequired && !isModified(new File(snapshotPath()))) {
+            checkedGeneration = generation;
+            return;
+        }
+        CompletableFuture<Integer> appended = exclusively(() -> {
+            File csvInputFile = new File(snapshotPath());
+            boolean forced = reloadRequired;
+            if (!forced && !isModified(csvInputFile)) {
+                checkedGeneration = generation;
+                return null;
+            }
+            // флаг снимается до чтения: ошибка записи во время перечитывания потребует еще одного
+            reloadRequired = false;
+            try {
+                return reload(csvInputFile, forced, generation);
+            } catch (RuntimeException e) {
+                reloadRequired |= forced;
+                throw e;
+            }
+        });
+        if (appended != null) {
+            await(appended);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Перечитывает изменившийся файл снимка: дочитывает дописанный хвост или загружает каталог целиком.
+     * Выполняется монопольно.
+     *
+     * @param forced загрузить каталог целиком, даже если в файл только дописали строки.
+     * @return future записи дочитанных книг в журнал или null.
+     */
+    private CompletableFuture<Integer> reload(File csvInputFile, boolean forced, long generation) {
+        if (!forced && isAppended(csvInputFile)) {
+            Tail tail = metrics.time("BookRepository.loadTail", () -> loadTail(csvInputFile));
+            if (tail != null) {
+                checkedGeneration = generation;
+                return tail.written;
+            }
+            // хвост не разобрался по записям, значит файл изменили не только дописыванием
+        }
+        File previous = SnapshotFile.previousOf(csvInputFile.toPath()).toFile();
+        SnapshotFile.Verification verification = csvInputFile.exists() ? verifySnapshot(csvInputFile) : null;
+        boolean fromPrevious = verification == null
+                ? previous.exists()
+                : verification.getStatus() == SnapshotFile.Status.CORRUPTED;
+        File source = csvInputFile;
+        if (fromPrevious) {
+            verification = previous.exists() ? verifySnapshot(previous) : null;
+            if (verification == null || verification.getStatus() == SnapshotFile.Status.CORRUPTED) {
+                throw new RuntimeException("Book snapshot " + csvInputFile + " is corrupted"
+                        + " and there is no valid previous generation");
+            }
+            System.err.println("Book snapshot " + csvInputFile + " is missing or corrupted,"
+                    + " loading previous generation " + previous);
+            source = previous;
+        }
+        List<Book> loaded = new ArrayList<>();
+        if (!journalEnabled || source.exists()) {
+            File loadedFile = source;
+            loaded = metrics.time("BookRepository.loadBooks", () -> loadBooks(loadedFile));
+            metrics.recordRead(loaded.size(), source.length());
+        }
+        if (verification != null && verification.getStatus() == SnapshotFile.Status.VALID
+                && verification.getRows() != loaded.size()) {
+            System.err.println("Book snapshot " + source + " has " + verification.getRows()
+                    + " books, but " + loaded.size() + " were loaded");
+        }
+        if (csvAppender != null) {
+            // файл могли заменить, следующая строка должна дописываться в новый
+            csvAppender.closeFile();
+        }
+        BookMap reloaded = newBookMap(loaded.size());
+        for (Book book : loaded) {
+            reloaded.put(book.getId(), book);
+        }
+        if (journalEnabled) {
+            metrics.recordRead(journal.replay(reloaded, fromPrevious), 0);
+        }
+        books.replace(reloaded);
+        if (fromPrevious) {
+            restoreSnapshot(csvInputFile.toPath());
+        }
+        rememberFileState(csvInputFile);
+        checkedGeneration = generation;
+        fireReload();
+        return null;
+    }
+
+    /**
+     * Проверяет, что CSV файл изменился только дописыванием строк в конец: это тот же файл,
+     * он стал длиннее, а загруженная часть заканчивается переводом строки и не изменилась.
+     */
+    private boolean isAppended(File csvFile) {
+        if (isBinary() || loadedLength <= 0 || loadedTail.length == 0 || loadedTail[loadedTail.length - 1] != '\n'
+                || csvFile.length() <= loadedLength) {
+            return false;
+        }
+        try {
+            Object fileKey = fileKey(csvFile.toPath());
+            if (loadedFileKey != null && !loadedFileKey.equals(fileKey)) {
+                return false;
+            }
+            return Arrays.equals(loadedTail,
+                    readRange(csvFile.toPath(), loadedLength - loadedTail.length, loadedLength));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Дочитывает и применяет хвост CSV файла.
+     *
+     * @return дочитанный хвост с future записи в журнал или null, если файл нужно загрузить целиком.
+     */
+    private Tail loadTail(File csvFile) {
+        Tail tail = readTail(csvFile);
+        if (tail != null) {
+            tail.written = applyTail(csvFile, tail);
+        }
+        return tail;
+    }
+
+    /**
+     * Читает записи, дописанные в CSV файл после загруженной части, до конца последней полной записи:
+     * граница ищется тем же разбором с учетом кавычек, поэтому перевод строки внутри значения в кавычках
+     * ее не задает, а недописанная запись будет прочитана при следующем изменении файла.
+     *
+     * @return дочитанные книги или null, если запись хвоста не разобралась: загруженная часть
+     * кончается не на границе записи, и файл нужно загрузить целиком.
+     */
+    private Tail readTail(File csvFile) {
+        Tail tail = new Tail(loadedLength);
+        try (MappedCsvReader csvReader = new MappedCsvReader(csvFile.toPath())) {
+            csvReader.forEach(loadedLength, csvReader.size(), false, record -> {
+                if (!record.isTerminated() || tail.malformed) {
+                    return;
+                }
+                try {
+                    tail.books.add(toBook(record, interner));
+                    tail.end = record.end();
+                } catch (RuntimeException e) {
+                    tail.malformed = true;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
+        }
+        return tail.malformed ? null : tail;
+    }
+
+    /**
+     * Применяет книги, дочитанные из хвоста CSV файла.
+     * Книги с уже существующими ID заменяются, а слушатели получают одно пакетное уведомление.
+     * В режиме журнала дочитанные книги записываются и в журнал, чтобы при следующей загрузке
+     * они применились после записей журнала, как сейчас в памяти.
+     *
+     * @return future записи в журнал или null, если журнал не ведется или новых книг нет.
+     */
+    private CompletableFuture<Integer> applyTail(File csvFile, Tail tail) {
+        List<Book> appended = tail.books;
+        metrics.recordRead(appended.size(), tail.end - tail.start);
+        rememberFileState(csvFile, tail.end);
+        if (appended.isEmpty()) {
+            return null;
+        }
+        Batch batch = new Batch(appended.size());
+        for (Book book : appended) {
+            batch.upsert(books.put(book), book);
+        }
+        CompletableFuture<Integer> written = journalEnabled
+                ? track(System.nanoTime(), appended.size(), journal.appendBatch(appended, new int[0]))
+                : null;
+        for (BookChangeListener listener : listeners) {
+            listener.onBatch(batch.previous, batch.current);
+        }
+        return written;
+    }
+
+    /**
+     * Проверяет контрольную сумму снимка. Снимок без трейлера или измененный после записи
+     * (отредактированный извне или с дописанными без журнала строками) считается целым.
+     */
+    private SnapshotFile.Verification verifySnapshot(File snapshot) {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            SnapshotFile.Verification verification = SnapshotFile.verify(snapshot.toPath());
+            failed = false;
+            return verification;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading book snapshot: " + e.getMessage(), e);
+        } finally {
+            metrics.method("BookRepository.verifySnapshot").record(System.nanoTime() - started, failed);
+        }
+    }
+
+    /**
+     * Записывает новый снимок из памяти после загрузки предыдущего поколения.
+     * Поврежденный снимок сохраняется как {@code .corrupt}, предыдущее поколение остается прежним,
+     * а журналы переносятся в журнал {@code .prev}, потому что их записи уже вошли в новый снимок.
+     */
+    private void restoreSnapshot(Path target) {
+        try {
+            if (Files.exists(target)) {
+                Files.move(target, target.resolveSibling(target.getFileName() + ".corrupt"),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new BookWriteException("Error moving corrupted book snapshot: " + e.getMessage(), e);
+        }
+        if (journalEnabled) {
+            journal.rotate();
+        }
+        writeSnapshot(books.values(), SnapshotFile.tempOf(target));
+        publishSnapshot(target);
+        if (journalEnabled) {
+            journal.retireRotated(false);
+        }
+    }
+
+    private boolean isModified(File csvInputFile) {
+        return csvInputFile.lastModified() != loadedLastModified || csvInputFile.length() != loadedLength;
+    }
+
+    private void fireReload() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<Book> snapshot = books.values();
+        for (BookChangeListener listener : listeners) {
+            listener.onReload(snapshot);
+        }
+    }
+
+    private void fireUpsert(Book previous, Book current) {
+        for (BookChangeListener listener : listeners) {
+            listener.onUpsert(previous, current);
+        }
+    }
+
+    private void fireDelete(Book removed) {
+        for (BookChangeListener listener : listeners) {
+            listener.onDelete(removed);
+        }
+    }
+
+    /**
+     * Запоминает дату изменения и размер файла, соответствующие данным в памяти.
+     */
+    private void rememberFileState(File csvFile) {
+        rememberFileState(csvFile, csvFile.length());
+    }
+
+    /**
+     * Запоминает состояние файла, загруженного до смещения {@code loaded}, и последние байты загруженной части,
+     * по которым потом проверяется, что в файл только дописали строки.
+     */
+    private void rememberFileState(File csvFile, long loaded) {
+        loadedLastModified = csvFile.lastModified();
+        loadedLength = loaded;
+        loadedFileKey = null;
+        loadedTail = new byte[0];
+        if (isBinary() || loaded <= 0) {
+            return;
+        }
+        try {
+            loadedFileKey = fileKey(csvFile.toPath());
+            loadedTail = readRange(csvFile.toPath(), Math.max(0, loaded - TAIL_CHECK_BYTES), loaded);
+        } catch (IOException e) {
+            // без последних байтов следующее изменение файла загрузится целиком
+            loadedTail = new byte[0];
+        }
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+
+    private static byte[] readRange(Path file, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0) {
+                // читаем диапазон целиком
+            }
+        }
+        return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+    }
+
+    /**
+     * Читает список книг из файла снимка: CSV или двоичного, в зависимости от {@code storage.format}.
+     *
+     * @return Список книг.
+     * @throws RuntimeException если произошла ошибка при чтении файла.
+     */
+    private List<Book> loadBooks(File csvInputFile) {
 
-        File csvInputFile = new File(filePath);
         if (!csvInputFile.exists()) {
             try {
                 throw new IOException("CSV file not found: " + csvInputFile.getAbsolutePath());
@@ -91,33 +1346,181 @@ public class BookRepository {
             }
         }
 
-        Iterator<Book> bookIterator;
-        try {
-            bookIterator = mapper.readerFor(Book.class)
-                    .with(schema)
-                    .readValues(csvInputFile);
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
+        if (isBinary()) {
+            try {
+                List<Book> loaded = BinaryBookSnapshot.read(csvInputFile.toPath());
+                loaded.forEach(interner::intern);
+                return loaded;
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading book snapshot: " + e.getMessage(), e);
+            }
         }
+        return loadCsv(csvInputFile);
+    }
 
-        List<Book> books = new ArrayList<>();
-        while (bookIterator.hasNext()) {
+    /**
+     * Читает список книг из CSV файла выбранным способом ({@code storage.reader}).
+     */
+    private List<Book> loadCsv(File csvInputFile) {
+        if ("mapped".equals(reader)) {
+            return loadBooksMapped(csvInputFile);
+        }
+
+        try (Stream<Book> stream = streamFile(csvInputFile)) {
+            return stream.map(interner::intern).collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Читает список книг из CSV файла через {@link MappedCsvReader}, без промежуточных строк для ID.
+     *
+     * @return Список книг.
+     * @throws RuntimeException если произошла ошибка при чтении CSV файла.
+     */
+    private List<Book> loadBooksMapped(File csvInputFile) {
+        if (csvInputFile.length() >= parallelLoadThreshold) {
             try {
-                books.add(bookIterator.next());
-            } catch (RuntimeException e) {
-                System.err.println("Error deserializing book: " + e.getMessage());
+                ParallelCsvImporter.ImportReport report =
+                        new ParallelCsvImporter(importParallelism(), interner).importFile(csvInputFile.toPath());
+                for (ParallelCsvImporter.ImportError error : report.getErrors()) {
+                    System.err.println("Error deserializing book: " + error);
+                }
+                return report.getBooks();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
             }
         }
+
+        List<Book> books = new ArrayList<>();
+        try (MappedCsvReader csvReader = new MappedCsvReader(csvInputFile.toPath())) {
+            csvReader.forEach(true, record -> {
+                try {
+                    books.add(toBook(record, interner));
+                } catch (RuntimeException e) {
+                    System.err.println("Error deserializing book: " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading CSV file: " + e.getMessage(), e);
+        }
         return books;
     }
 
     /**
-     * Записывает в файл список книг без удаленной книги
+     * Создает пустую карту книг выбранного хранилища ({@code storage.engine}).
+     */
+    private BookMap newBookMap(int expectedSize) {
+        if ("offheap".equals(engine)) {
+            return new OffHeapBookMap(expectedSize, segmentSize, interner);
+        }
+        return new IntBookMap(expectedSize);
+    }
+
+    private boolean isBinary() {
+        return "binary".equals(format);
+    }
+
+    private String snapshotPath() {
+        return isBinary() ? binaryFilePath() : filePath;
+    }
+
+    private String binaryFilePath() {
+        return filePath.replaceFirst("\\.csv$", "") + ".bin";
+    }
+
+    private int importParallelism() {
+        return importParallelism > 0 ? importParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Создает книгу из записи CSV файла с колонками id, title, author, description.
      *
-     * @param books Список книг с уже удаленной книгой.
-     * @param id    ID книги для удаления.
+     * @throws IllegalArgumentException если запись не соответствует схеме.
      */
-    public void deleteBook(List<Book> books, int id) {
-        writeBooks(books);
+    static Book toBook(MappedCsvReader.CsvRecord record, BookInterner interner) {
+        if (record.error() != null) {
+            throw new IllegalArgumentException(record.error() + " at byte " + record.offset());
+        }
+        if (record.fieldCount() > 4) {
+            throw new IllegalArgumentException("Too many entries: expected at most 4 (value #4) at byte "
+                    + record.offset());
+        }
+        return new Book(record.getInt(0), interner.title(record.getString(1)), interner.author(record.getString(2)),
+                record.getString(3));
+    }
+
+    /**
+     * Результат пакетного изменения одной книги.
+     */
+    public enum BatchStatus {
+        APPLIED,
+        DUPLICATE_ID,
+        NOT_FOUND,
+        VERSION_CONFLICT
+    }
+
+    /**
+     * Шаг пакета: проверяет и применяет в памяти изменение книги с номером {@code index}.
+     */
+    @FunctionalInterface
+    private interface BatchStep {
+        BatchStatus apply(int index, Batch batch);
+    }
+
+    /**
+     * Книги, дочитанные из хвоста CSV файла: с какого смещения читали и где кончилась последняя полная запись.
+     */
+    private static class Tail {
+        private final List<Book> books = new ArrayList<>();
+        private final long start;
+        private long end;
+        private boolean malformed;
+        private CompletableFuture<Integer> written;
+
+        Tail(long start) {
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    /**
+     * Изменения пакета для записи на диск и уведомления слушателей.
+     */
+    private static class Batch {
+        private final List<Book> previous;
+        private final List<Book> current;
+        private final List<Book> upserts = new ArrayList<>();
+        private final List<Integer> deleted = new ArrayList<>();
+        private final Map<Integer, Book> changes = new LinkedHashMap<>();
+
+        Batch(int size) {
+            previous = new ArrayList<>(size);
+            current = new ArrayList<>(size);
+        }
+
+        void upsert(Book before, Book after) {
+            previous.add(before);
+            current.add(after);
+            upserts.add(after);
+            changes.put(after.getId(), after);
+        }
+
+        void delete(Book removed) {
+            previous.add(removed);
+            current.add(null);
+            deleted.add(removed.getId());
+            changes.put(removed.getId(), null);
+        }
+
+        /**
+         * Возвращает книгу с учетом изменений пакета, еще не примененных к каталогу.
+         */
+        Book lookup(StampedBookMap books, int id) {
+            return changes.containsKey(id) ? changes.get(id) : books.get(id);
+        }
+
+        int[] deletedIds() {
+            return deleted.stream().mapToInt(Integer::intValue).toArray();
+        }
     }
 }
@@ -0,0 +1,16 @@
+package org.example.repository;
+
+/**
+ * Изменение каталога не удалось записать на диск: в снимок, CSV файл или журнал.
+ * Остальные {@link RuntimeException} репозитория означают ошибку программы, а не диска.
+ */
+public class BookWriteException extends RuntimeException {
+
+    public BookWriteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public BookWriteException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.repository;
+
+/**
+ * Книга с таким ID уже есть в каталоге.
+ * Наследует {@link IllegalStateException}, поэтому код, который ловит его, по-прежнему работает.
+ */
+public class DuplicateBookException extends IllegalStateException {
+
+    private final int id;
+
+    public DuplicateBookException(int id) {
+        super("Book with id " + id + " already exists");
+        this.id = id;
+    }
+
+    /**
+     * Возвращает ID книги, которая уже есть в каталоге.
+     */
+    public int getId() {
+        return id;
+    }
+}
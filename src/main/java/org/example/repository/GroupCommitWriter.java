@@ -0,0 +1,254 @@
+package org.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дописывание записей в конец файла с групповой фиксацией.
+ * <p>
+ * Вызывающие потоки только кладут готовые байты записи в очередь и получают {@link CompletableFuture},
+ * который завершается, когда запись попала в файл (и на диск, если так требует {@link SyncPolicy}).
+ * Отдельный поток забирает из очереди пачку до {@code batchSize} записей, записывает ее одним вызовом
+ * в постоянно открытый {@link FileChannel} и при необходимости выполняет один fsync на всю пачку.
+ * Пока пачка пишется, следующие записи копятся в очереди, поэтому при многих писателях
+ * стоимость открытия файла и fsync делится между ними.
+ * Если {@code flushIntervalMicros} больше 0, поток ждет набора полной пачки не дольше этого времени.
+ */
+public class GroupCommitWriter implements Closeable {
+
+    /**
+     * Когда записи сбрасываются на диск.
+     */
+    public enum SyncPolicy {
+        /**
+         * Только запись в файл, сброс на диск выполняет операционная система.
+         */
+        NONE,
+        /**
+         * Один fsync после каждой пачки.
+         */
+        BATCH,
+        /**
+         * fsync после каждой записи.
+         */
+        RECORD;
+
+        public static SyncPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Path path;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final SyncPolicy syncPolicy;
+    private final Thread flusher;
+
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private long enqueued;
+    private long written;
+    private boolean closed;
+
+    /**
+     * Канал открывается при первой записи и закрывается {@link #closeFile()}.
+     * Используется только потоком записи или под монитором, когда очередь пуста.
+     */
+    private FileChannel channel;
+
+    public GroupCommitWriter(Path path, int batchSize, long flushIntervalMicros, SyncPolicy syncPolicy,
+                             String threadName) {
+        this.path = path;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, flushIntervalMicros));
+        this.syncPolicy = syncPolicy;
+        this.flusher = new Thread(this::run, threadName);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Ставит запись в очередь.
+     *
+     * @param record байты записи целиком.
+     * @return future, который завершается после записи или с ошибкой ввода-вывода.
+     * @throws BookWriteException если писатель закрыт.
+     */
+    public CompletableFuture<Void> append(byte[] record) {
+        Pending pending = new Pending(record);
+        synchronized (this) {
+            if (closed) {
+                throw new BookWriteException("Writer is closed: " + path);
+            }
+            queue.add(pending);
+            enqueued++;
+            if (queue.size() == 1 || queue.size() >= batchSize) {
+                notifyAll();
+            }
+        }
+        return pending.future;
+    }
+
+    /**
+     * Ждет, пока все поставленные в очередь записи будут записаны.
+     */
+    public synchronized void awaitWritten() {
+        boolean interrupted = false;
+        while (written < enqueued) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дожидается записи очереди и закрывает файл, например перед его переименованием.
+     * Следующая запись откроет файл по тому же пути заново.
+     */
+    public synchronized void closeFile() {
+        awaitWritten();
+        closeChannel();
+    }
+
+    /**
+     * Записывает оставшиеся записи, останавливает поток записи и закрывает файл.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeChannel();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (takeBatch(batch)) {
+            Throwable failure = null;
+            try {
+                writeBatch(batch);
+            } catch (IOException | RuntimeException e) {
+                failure = new BookWriteException("Error writing to " + path + ": " + e.getMessage(), e);
+                try {
+                    closeChannel();
+                } catch (RuntimeException closeError) {
+                    failure.addSuppressed(closeError);
+                }
+            }
+            synchronized (this) {
+                written += batch.size();
+                notifyAll();
+            }
+            for (Pending pending : batch) {
+                if (failure == null) {
+                    pending.future.complete(null);
+                } else {
+                    pending.future.completeExceptionally(failure);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Ждет записей и забирает пачку из очереди.
+     *
+     * @return false, если писатель закрыт и очередь пуста.
+     */
+    private synchronized boolean takeBatch(List<Pending> batch) {
+        try {
+            while (queue.isEmpty()) {
+                if (closed) {
+                    return false;
+                }
+                wait();
+            }
+            if (flushIntervalNanos > 0) {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining;
+                while (queue.size() < batchSize && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+        }
+        while (!queue.isEmpty() && batch.size() < batchSize) {
+            batch.add(queue.poll());
+        }
+        return true;
+    }
+
+    private void writeBatch(List<Pending> batch) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        if (syncPolicy == SyncPolicy.RECORD) {
+            for (Pending pending : batch) {
+                write(new ByteBuffer[]{ByteBuffer.wrap(pending.record)});
+                channel.force(false);
+            }
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(batch.get(i).record);
+        }
+        write(buffers);
+        if (syncPolicy == SyncPolicy.BATCH) {
+            channel.force(false);
+        }
+    }
+
+    private void write(ByteBuffer[] buffers) throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new BookWriteException("Error closing " + path + ": " + e.getMessage(), e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private static class Pending {
+        private final byte[] record;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(byte[] record) {
+            this.record = record;
+        }
+    }
+}
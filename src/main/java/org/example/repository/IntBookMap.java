@@ -0,0 +1,188 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Индекс книг по ID на примитивных массивах, без упаковки ID в {@link Integer}.
+ * Поиск, добавление и удаление выполняются за O(1) с открытой адресацией,
+ * а обход идет в порядке добавления, как в CSV файле.
+ * <p>
+ * Книги хранятся в плотных массивах {@code keys}/{@code values}, а хеш-таблица {@code slots}
+ * хранит номера записей в них. Удаленная запись помечается {@code null} и вычищается при перестроении.
+ * Класс не потокобезопасен, но чтение во время изменения не зацикливается:
+ * на этом основано оптимистичное чтение в {@link StampedBookMap}.
+ */
+public class IntBookMap implements BookMap {
+
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+
+    private int[] slots;
+    private int[] keys;
+    private Book[] values;
+    private int used;
+    private int size;
+
+    public IntBookMap() {
+        this(16);
+    }
+
+    public IntBookMap(int expectedSize) {
+        allocate(Math.max(expectedSize, 4));
+    }
+
+    @Override
+    public Book get(int id) {
+        int slot = findSlot(id);
+        return slot < 0 ? null : values[slots[slot]];
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return findSlot(id) >= 0;
+    }
+
+    @Override
+    public Book put(int id, Book book) {
+        int slot = findSlot(id);
+        if (slot >= 0) {
+            int entry = slots[slot];
+            Book previous = values[entry];
+            values[entry] = book;
+            return previous;
+        }
+        if (used == keys.length) {
+            // много удаленных записей - перестраиваем на месте, иначе растем вдвое
+            allocateAndCopy(size * 2 < keys.length ? keys.length : keys.length * 2);
+        }
+        int entry = used++;
+        keys[entry] = id;
+        values[entry] = book;
+        slots[freeSlot(id)] = entry;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Book remove(int id) {
+        int slot = findSlot(id);
+        if (slot < 0) {
+            return null;
+        }
+        int entry = slots[slot];
+        Book previous = values[entry];
+        values[entry] = null;
+        slots[slot] = DELETED;
+        size--;
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        // новые массивы, чтобы уже начатые обходы stream() не увидели новых данных
+        allocate(keys.length);
+        used = 0;
+        size = 0;
+    }
+
+    @Override
+    public void forEach(Consumer<Book> action) {
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null) {
+                action.accept(values[i]);
+            }
+        }
+    }
+
+    @Override
+    public List<Book> values() {
+        List<Book> result = new ArrayList<>(size);
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        Book[] snapshot = values;
+        int snapshotUsed = used;
+        return Arrays.stream(snapshot, 0, snapshotUsed).filter(Objects::nonNull);
+    }
+
+    @Override
+    public void assignVersions(LongSupplier versions) {
+        forEach(book -> book.setVersion(versions.getAsLong()));
+    }
+
+    private int findSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = slots[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED && keys[entry] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int freeSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        while (slots[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Book[capacity];
+        // таблица заполнена не более чем наполовину
+        int[] newSlots = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        Arrays.fill(newSlots, EMPTY);
+        slots = newSlots;
+    }
+
+    private void allocateAndCopy(int capacity) {
+        int[] oldKeys = keys;
+        Book[] oldValues = values;
+        int oldUsed = used;
+        allocate(capacity);
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldValues[i] != null) {
+                keys[used] = oldKeys[i];
+                values[used] = oldValues[i];
+                slots[freeSlot(oldKeys[i])] = used;
+                used++;
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package org.example.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Читатель CSV файла через отображение в память ({@link FileChannel#map}).
+ * Границы записей и полей ищутся прямо по байтам файла, а строки декодируются из UTF-8
+ * только при обращении к полю, поэтому непрочитанные колонки не создают объектов.
+ * <p>
+ * Правила разбора совпадают со схемой {@link BookRepository}: разделитель {@code ,},
+ * кавычки {@code "}, кавычка внутри поля удваивается, поле в кавычках может содержать
+ * запятые и переводы строк, записи разделяются {@code \n} или {@code \r\n}.
+ * Строки, начинающиеся с {@code #} (трейлер {@link SnapshotFile}), пропускаются.
+ * Файлы больше окна отображения читаются по частям, окно сдвигается на начало недочитанной записи.
+ */
+public class MappedCsvReader implements Closeable {
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    private long endPosition;
+
+    public MappedCsvReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedCsvReader(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Возвращает смещение, на котором закончился последний обход, - конец последней записи диапазона.
+     * Если последняя запись пересекла конец диапазона, смещение больше {@code to}.
+     */
+    public long endPosition() {
+        return endPosition;
+    }
+
+    /**
+     * Возвращает размер файла в байтах.
+     */
+    public long size() {
+        return fileSize;
+    }
+
+    /**
+     * Обходит все записи файла.
+     *
+     * @param skipHeader пропустить первую запись (строку заголовка).
+     * @param action     обработчик записи. Запись действительна только внутри вызова.
+     * @return количество переданных обработчику записей.
+     * @throws IOException если файл не удалось отобразить в память.
+     */
+    public long forEach(boolean skipHeader, Consumer<CsvRecord> action) throws IOException {
+        return forEach(0, fileSize, skipHeader, action);
+    }
+
+    /**
+     * Обходит записи, которые начинаются в диапазоне байтов {@code [from, to)}.
+     * Диапазон должен начинаться на границе записи.
+     *
+     * @param from       смещение начала первой записи.
+     * @param to         смещение, после которого новые записи не начинаются.
+     * @param skipHeader пропустить первую запись диапазона.
+     * @param action     обработчик записи. Запись действительна только внутри вызова.
+     * @return количество переданных обработчику записей.
+     * @throws IOException если файл не удалось отобразить в память.
+     */
+    public long forEach(long from, long to, boolean skipHeader, Consumer<CsvRecord> action) throws IOException {
+        CsvRecord record = new CsvRecord();
+        long count = 0;
+        long position = from;
+        boolean skip = skipHeader;
+        while (position < to) {
+            int end = scanRecord(position, record);
+            if (end < 0) {
+                // запись не поместилась в окно - сдвигаем окно на ее начало
+                map(position, true);
+                continue;
+            }
+            position = windowStart + end;
+            record.end = position;
+            if (skip) {
+                skip = false;
+            } else if (!record.isBlank() && !record.isComment()) {
+                action.accept(record);
+                count++;
+            }
+        }
+        endPosition = Math.max(position, from);
+        return count;
+    }
+
+    /**
+     * Разбирает одну запись, начиная с абсолютного смещения.
+     *
+     * @return смещение конца записи относительно окна или -1, если запись не поместилась в окно.
+     */
+    private int scanRecord(long position, CsvRecord record) throws IOException {
+        if (window == null || position < windowStart || position >= windowStart + windowLimit) {
+            map(position, false);
+        }
+        MappedByteBuffer buffer = window;
+        int limit = windowLimit;
+        boolean atEof = windowStart + limit == fileSize;
+        int p = (int) (position - windowStart);
+
+        record.reset(buffer, windowStart + p);
+        while (true) {
+            int start = p;
+            int end;
+            boolean quoted = false;
+            boolean escaped = false;
+            if (p < limit && buffer.get(p) == '"') {
+                quoted = true;
+                start = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        if (atEof) {
+                            record.malformed("Missing closing quote for value");
+                            end = p;
+                            break;
+                        }
+                        return -1;
+                    }
+                    if (buffer.get(p) == '"') {
+                        if (p + 1 < limit && buffer.get(p + 1) == '"') {
+                            escaped = true;
+                            p += 2;
+                            continue;
+                        }
+                        if (p + 1 >= limit && !atEof) {
+                            return -1;
+                        }
+                        end = p++;
+                        break;
+                    }
+                    p++;
+                }
+            } else {
+                while (p < limit) {
+                    byte b = buffer.get(p);
+                    if (b == ',' || b == '\n' || b == '\r') {
+                        break;
+                    }
+                    p++;
+                }
+                end = p;
+            }
+
+            if (p >= limit && !atEof) {
+                return -1;
+            }
+            record.addField(start, end, quoted, escaped);
+
+            if (p >= limit) {
+                return p;
+            }
+            byte b = buffer.get(p);
+            if (b == ',') {
+                p++;
+                continue;
+            }
+            if (b == '\r') {
+                if (p + 1 >= limit && !atEof) {
+                    return -1;
+                }
+                p++;
+                if (p < limit && buffer.get(p) == '\n') {
+                    p++;
+                }
+                record.terminated = true;
+                return p;
+            }
+            if (b == '\n') {
+                record.terminated = true;
+                return p + 1;
+            }
+            // символ после закрывающей кавычки - пропускаем остаток записи
+            record.malformed("Unexpected character after closing quote");
+            while (p < limit && buffer.get(p) != '\n') {
+                p++;
+            }
+            if (p >= limit && !atEof) {
+                return -1;
+            }
+            record.terminated = p < limit;
+            return Math.min(p + 1, limit);
+        }
+    }
+
+    private void map(long position, boolean grow) throws IOException {
+        if (grow && window != null && position == windowStart) {
+            // запись длиннее окна
+            windowSize = (int) Math.min((long) windowSize * 2, Integer.MAX_VALUE - 8);
+        }
+        long length = Math.min(windowSize, fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        windowStart = position;
+        windowLimit = (int) length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Одна запись CSV файла: смещения полей внутри отображенного окна.
+     * Значения полей декодируются только при обращении.
+     */
+    public static class CsvRecord {
+
+        private MappedByteBuffer buffer;
+        private long offset;
+        private long end;
+        private boolean terminated;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private boolean[] quoted = new boolean[8];
+        private boolean[] escaped = new boolean[8];
+        private int fieldCount;
+        private String error;
+        private byte[] scratch = new byte[256];
+
+        void reset(MappedByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.terminated = false;
+            this.fieldCount = 0;
+            this.error = null;
+        }
+
+        void addField(int start, int end, boolean isQuoted, boolean isEscaped) {
+            if (fieldCount == starts.length) {
+                int capacity = fieldCount * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                quoted = Arrays.copyOf(quoted, capacity);
+                escaped = Arrays.copyOf(escaped, capacity);
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            quoted[fieldCount] = isQuoted;
+            escaped[fieldCount] = isEscaped;
+            fieldCount++;
+        }
+
+        void malformed(String message) {
+            if (error == null) {
+                error = message;
+            }
+        }
+
+        boolean isBlank() {
+            return fieldCount == 1 && !quoted[0] && starts[0] == ends[0];
+        }
+
+        boolean isComment() {
+            return !quoted[0] && starts[0] < ends[0] && buffer.get(starts[0]) == '#';
+        }
+
+        /**
+         * Возвращает смещение начала записи в файле.
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * Возвращает смещение конца записи в файле, после ее перевода строки.
+         */
+        public long end() {
+            return end;
+        }
+
+        /**
+         * Возвращает true, если запись закончилась переводом строки. Последняя запись файла без него
+         * может быть недописана: ее поле в кавычках могло оборваться на переводе строки внутри значения.
+         */
+        public boolean isTerminated() {
+            return terminated;
+        }
+
+        /**
+         * Возвращает количество полей в записи.
+         */
+        public int fieldCount() {
+            return fieldCount;
+        }
+
+        /**
+         * Возвращает описание ошибки разбора или null, если запись корректна.
+         */
+        public String error() {
+            return error;
+        }
+
+        /**
+         * Декодирует поле как строку UTF-8.
+         *
+         * @param index номер поля.
+         * @return значение поля или null, если в записи меньше полей.
+         */
+        public String getString(int index) {
+            if (index >= fieldCount) {
+                return null;
+            }
+            int length = ends[index] - starts[index];
+            if (length == 0) {
+                return "";
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(starts[index], scratch, 0, length);
+            if (escaped[index]) {
+                length = unescape(scratch, length);
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Разбирает поле как целое число без создания строки.
+         *
+         * @param index номер поля.
+         * @return значение поля.
+         * @throws NumberFormatException если поле не является целым числом.
+         */
+        public int getInt(int index) {
+            if (index >= fieldCount || starts[index] == ends[index]) {
+                throw new NumberFormatException("Empty value for column " + index);
+            }
+            int p = starts[index];
+            int end = ends[index];
+            boolean negative = buffer.get(p) == '-';
+            if (negative || buffer.get(p) == '+') {
+                p++;
+            }
+            if (p == end) {
+                throw new NumberFormatException("Not a number: " + getString(index));
+            }
+            long value = 0;
+            for (; p < end; p++) {
+                int digit = buffer.get(p) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a number: " + getString(index));
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new NumberFormatException("Number out of int range: " + getString(index));
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Number out of int range: " + getString(index));
+            }
+            return (int) value;
+        }
+
+        /**
+         * Заменяет удвоенные кавычки на одинарные.
+         */
+        private static int unescape(byte[] bytes, int length) {
+            int out = 0;
+            for (int i = 0; i < length; i++) {
+                bytes[out++] = bytes[i];
+                if (bytes[i] == '"' && i + 1 < length && bytes[i + 1] == '"') {
+                    i++;
+                }
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Каталог книг с колоночным хранением: ID и версии книг лежат в примитивных массивах,
+ * а название, автор и описание - в кодировке UTF-8 в прямых {@link ByteBuffer} вне кучи.
+ * Объект {@link Book} создается только при чтении книги и не удерживается картой,
+ * поэтому в куче остаются несколько массивов на весь каталог вместо четырех объектов на каждую книгу,
+ * и сборщику мусора почти нечего обходить.
+ * <p>
+ * Поля книги хранятся одной записью {@code [длина названия][длина автора][длина описания][байты]}
+ * (длина -1 - поле null) в сегментах по {@code segmentSize} байт. Название и автор, которые есть в словарях
+ * {@link BookInterner}, вместо байтов хранятся номером в словаре (длина {@code -2 - номер}),
+ * и при чтении книги возвращается строка из словаря без декодирования. Записи только дописываются:
+ * при изменении книги новая запись дописывается в конец, а старая становится мусором.
+ * Когда мусора становится больше живых данных, живые записи копируются в новые сегменты.
+ * Поиск по ID устроен как в {@link IntBookMap}: открытая адресация по плотному массиву записей.
+ * <p>
+ * Память вне кучи ограничена параметром JVM {@code -XX:MaxDirectMemorySize} (по умолчанию - размер кучи).
+ */
+public class OffHeapBookMap implements BookMap {
+
+    /**
+     * Размер сегмента по умолчанию: 64 МБ.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final long REMOVED = -1;
+    private static final int HEADER = 3 * Integer.BYTES;
+    private static final int NULL_LENGTH = -1;
+
+    private final int segmentSize;
+    private final BookInterner interner;
+
+    /**
+     * Массивы и сегменты текущего поколения карты. Перестроение публикует новый объект целиком,
+     * поэтому читатель без блокировки берет адреса и сегменты одного поколения.
+     */
+    private volatile Columns columns;
+    private int used;
+    private int size;
+    private long liveBytes;
+
+    public OffHeapBookMap() {
+        this(16, DEFAULT_SEGMENT_SIZE, BookInterner.NONE);
+    }
+
+    /**
+     * @param expectedSize ожидаемое количество книг.
+     * @param segmentSize  размер сегмента вне кучи в байтах.
+     * @param interner     словари, номера из которых хранятся вместо названий и авторов.
+     */
+    public OffHeapBookMap(int expectedSize, int segmentSize, BookInterner interner) {
+        this.segmentSize = segmentSize;
+        this.interner = interner;
+        this.columns = new Columns(Math.max(expectedSize, 4), new Arena(segmentSize, interner));
+    }
+
+    @Override
+    public Book get(int id) {
+        Columns c = columns;
+        int slot = findSlot(c, id);
+        return slot < 0 ? null : view(c.arena, c.keys, c.versions, c.addresses, c.slots[slot]);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return findSlot(columns, id) >= 0;
+    }
+
+    @Override
+    public Book put(int id, Book book) {
+        byte[] record = encode(book, interner);
+        Columns c = columns;
+        int slot = findSlot(c, id);
+        if (slot >= 0) {
+            int entry = c.slots[slot];
+            Book previous = view(c.arena, c.keys, c.versions, c.addresses, entry);
+            liveBytes -= c.arena.recordLength(c.addresses[entry]);
+            c.addresses[entry] = c.arena.append(record);
+            c.versions[entry] = book.getVersion();
+            liveBytes += record.length;
+            compactIfWasteful();
+            return previous;
+        }
+        if (used == c.keys.length) {
+            // много удаленных записей - перестраиваем на месте, иначе растем вдвое
+            allocateAndCopy(size * 2 < c.keys.length ? c.keys.length : c.keys.length * 2);
+            c = columns;
+        }
+        int entry = used++;
+        c.keys[entry] = id;
+        c.versions[entry] = book.getVersion();
+        c.addresses[entry] = c.arena.append(record);
+        liveBytes += record.length;
+        c.slots[freeSlot(c, id)] = entry;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Book remove(int id) {
+        Columns c = columns;
+        int slot = findSlot(c, id);
+        if (slot < 0) {
+            return null;
+        }
+        int entry = c.slots[slot];
+        Book previous = view(c.arena, c.keys, c.versions, c.addresses, entry);
+        liveBytes -= c.arena.recordLength(c.addresses[entry]);
+        c.addresses[entry] = REMOVED;
+        c.slots[slot] = DELETED;
+        size--;
+        compactIfWasteful();
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        // новые массивы и сегменты, чтобы уже начатые обходы stream() не увидели новых данных
+        columns = new Columns(columns.keys.length, new Arena(segmentSize, interner));
+        used = 0;
+        size = 0;
+        liveBytes = 0;
+    }
+
+    @Override
+    public void forEach(Consumer<Book> action) {
+        Columns c = columns;
+        for (int i = 0; i < used; i++) {
+            if (c.addresses[i] != REMOVED) {
+                action.accept(view(c.arena, c.keys, c.versions, c.addresses, i));
+            }
+        }
+    }
+
+    /**
+     * Возвращает список, который создает книги при обращении к ним.
+     * Список хранит только ID, версии и адреса записей (20 байт на книгу),
+     * а сами записи вне кучи не изменяются, поэтому последующие изменения карты на список не влияют.
+     */
+    @Override
+    public List<Book> values() {
+        Columns c = columns;
+        int[] liveKeys = new int[size];
+        long[] liveVersions = new long[size];
+        long[] liveAddresses = new long[size];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (c.addresses[i] != REMOVED) {
+                liveKeys[count] = c.keys[i];
+                liveVersions[count] = c.versions[i];
+                liveAddresses[count] = c.addresses[i];
+                count++;
+            }
+        }
+        return new Snapshot(c.arena, liveKeys, liveVersions, liveAddresses);
+    }
+
+    /**
+     * Возвращает поток по снимку {@link #values()}: адреса и версии копируются при вызове,
+     * под той же блокировкой, что и изменения, а книги создаются лениво из неизменяемых записей.
+     * Изменения карты во время обхода потока на него не влияют.
+     */
+    @Override
+    public Stream<Book> stream() {
+        return values().stream();
+    }
+
+    @Override
+    public void assignVersions(LongSupplier next) {
+        Columns c = columns;
+        for (int i = 0; i < used; i++) {
+            if (c.addresses[i] != REMOVED) {
+                c.versions[i] = next.getAsLong();
+            }
+        }
+    }
+
+    /**
+     * Возвращает объем занятой памяти вне кучи в байтах, включая мусор.
+     */
+    public long offHeapBytes() {
+        return columns.arena.allocatedBytes();
+    }
+
+    private static Book view(Arena arena, int[] keys, long[] versions, long[] addresses, int entry) {
+        long address = addresses[entry];
+        if (address == REMOVED) {
+            return null;
+        }
+        Book book = arena.read(keys[entry], address);
+        book.setVersion(versions[entry]);
+        return book;
+    }
+
+    private static byte[] encode(Book book, BookInterner interner) {
+        int titleId = interner.titleId(book.getTitle());
+        int authorId = interner.authorId(book.getAuthor());
+        byte[] title = titleId == StringDictionary.ABSENT ? bytes(book.getTitle()) : null;
+        byte[] author = authorId == StringDictionary.ABSENT ? bytes(book.getAuthor()) : null;
+        byte[] description = bytes(book.getDescription());
+        ByteBuffer record = ByteBuffer.allocate(HEADER + length(title) + length(author) + length(description));
+        record.putInt(titleId != StringDictionary.ABSENT ? -2 - titleId : lengthField(title));
+        record.putInt(authorId != StringDictionary.ABSENT ? -2 - authorId : lengthField(author));
+        record.putInt(lengthField(description));
+        if (title != null) {
+            record.put(title);
+        }
+        if (author != null) {
+            record.put(author);
+        }
+        if (description != null) {
+            record.put(description);
+        }
+        return record.array();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static int lengthField(byte[] value) {
+        return value == null ? NULL_LENGTH : value.length;
+    }
+
+    /**
+     * Копирует живые записи в новые сегменты, если мусор занимает больше половины и больше одного сегмента.
+     */
+    private void compactIfWasteful() {
+        long garbage = columns.arena.usedBytes() - liveBytes;
+        if (garbage > liveBytes && garbage > segmentSize) {
+            allocateAndCopy(columns.keys.length);
+        }
+    }
+
+    private static int findSlot(Columns c, int id) {
+        int[] slots = c.slots;
+        int mask = slots.length - 1;
+        int slot = IntBookMap.hash(id) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int entry = slots[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED && c.keys[entry] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int freeSlot(Columns c, int id) {
+        int mask = c.slots.length - 1;
+        int slot = IntBookMap.hash(id) & mask;
+        while (c.slots[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Перестраивает массивы без удаленных записей и переносит живые записи в новые сегменты.
+     * Старые массивы и сегменты не изменяются, поэтому начатые обходы и списки {@link #values()} остаются верными,
+     * а новое поколение публикуется одной записью после того, как полностью заполнено.
+     */
+    private void allocateAndCopy(int capacity) {
+        Columns old = columns;
+        Columns copy = new Columns(capacity, new Arena(segmentSize, interner));
+        int copied = 0;
+        for (int i = 0; i < used; i++) {
+            if (old.addresses[i] != REMOVED) {
+                copy.keys[copied] = old.keys[i];
+                copy.versions[copied] = old.versions[i];
+                copy.addresses[copied] = copy.arena.append(old.arena.record(old.addresses[i]));
+                copy.slots[freeSlot(copy, old.keys[i])] = copied;
+                copied++;
+            }
+        }
+        used = copied;
+        columns = copy;
+    }
+
+    /**
+     * Массивы записей и сегменты одного поколения карты.
+     */
+    private static class Columns {
+        private final int[] slots;
+        private final int[] keys;
+        private final long[] versions;
+        /**
+         * Адрес записи полей книги в {@link #arena}: номер сегмента в старших 32 битах и смещение в младших,
+         * {@link #REMOVED} - книга удалена.
+         */
+        private final long[] addresses;
+        private final Arena arena;
+
+        Columns(int capacity, Arena arena) {
+            this.keys = new int[capacity];
+            this.versions = new long[capacity];
+            this.addresses = new long[capacity];
+            // таблица заполнена не более чем наполовину
+            this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+            Arrays.fill(this.slots, EMPTY);
+            this.arena = arena;
+        }
+    }
+
+    /**
+     * Неизменяемый снимок каталога для {@link #values()}.
+     */
+    private static class Snapshot extends AbstractList<Book> implements RandomAccess {
+        private final Arena arena;
+        private final int[] keys;
+        private final long[] versions;
+        private final long[] addresses;
+
+        Snapshot(Arena arena, int[] keys, long[] versions, long[] addresses) {
+            this.arena = arena;
+            this.keys = keys;
+            this.versions = versions;
+            this.addresses = addresses;
+        }
+
+        @Override
+        public Book get(int index) {
+            return view(arena, keys, versions, addresses, index);
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+    }
+
+    /**
+     * Сегменты вне кучи, в которые записи только дописываются.
+     * Добавленный сегмент публикуется заменой массива сегментов, поэтому читатели без блокировок
+     * видят либо старый, либо новый массив целиком.
+     */
+    private static class Arena {
+        private final int segmentSize;
+        private final BookInterner interner;
+        private volatile ByteBuffer[] segments = new ByteBuffer[0];
+        private ByteBuffer current;
+        private long usedBytes;
+        private long allocatedBytes;
+
+        Arena(int segmentSize, BookInterner interner) {
+            this.segmentSize = segmentSize;
+            this.interner = interner;
+        }
+
+        long append(byte[] record) {
+            if (current == null || current.remaining() < record.length) {
+                current = ByteBuffer.allocateDirect(Math.max(segmentSize, record.length));
+                ByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+                grown[grown.length - 1] = current;
+                segments = grown;
+                allocatedBytes += current.capacity();
+            }
+            int offset = current.position();
+            current.put(record);
+            usedBytes += record.length;
+            return ((long) (segments.length - 1) << 32) | offset;
+        }
+
+        /**
+         * Читает книгу по адресу записи. Читатель без блокировки может увидеть адрес или заголовок
+         * записи, которую еще дописывают, поэтому длины проверяются до выделения памяти под строки:
+         * некорректная запись дает {@link IllegalStateException}, и чтение повторяется под блокировкой.
+         */
+        Book read(int id, long address) {
+            ByteBuffer segment = segments[(int) (address >>> 32)];
+            int offset = (int) address;
+            if (offset < 0 || (long) offset + HEADER > segment.limit()) {
+                throw new IllegalStateException("Record is out of segment bounds");
+            }
+            int titleLength = segment.getInt(offset);
+            int authorLength = segment.getInt(offset + Integer.BYTES);
+            int descriptionLength = segment.getInt(offset + 2 * Integer.BYTES);
+            long position = offset + HEADER;
+            String title = titleLength < NULL_LENGTH
+                    ? interner.titleOf(-2 - titleLength)
+                    : string(segment, position, titleLength);
+            position += Math.max(0, titleLength);
+            String author = authorLength < NULL_LENGTH
+                    ? interner.authorOf(-2 - authorLength)
+                    : string(segment, position, authorLength);
+            position += Math.max(0, authorLength);
+            String description = string(segment, position, descriptionLength);
+            return new Book(id, title, author, description);
+        }
+
+        /**
+         * Возвращает копию записи целиком.
+         */
+        byte[] record(long address) {
+            byte[] record = new byte[recordLength(address)];
+            segments[(int) (address >>> 32)].get((int) address, record);
+            return record;
+        }
+
+        int recordLength(long address) {
+            ByteBuffer segment = segments[(int) (address >>> 32)];
+            int offset = (int) address;
+            return HEADER + Math.max(0, segment.getInt(offset))
+                    + Math.max(0, segment.getInt(offset + Integer.BYTES))
+                    + Math.max(0, segment.getInt(offset + 2 * Integer.BYTES));
+        }
+
+        long usedBytes() {
+            return usedBytes;
+        }
+
+        long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        private static String string(ByteBuffer segment, long position, int length) {
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (length < 0 || position + length > segment.limit()) {
+                // запись прочитана во время изменения карты, читатель повторит чтение под блокировкой
+                throw new IllegalStateException("Record is out of segment bounds");
+            }
+            byte[] bytes = new byte[length];
+            segment.get((int) position, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.example.model.Book;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Параллельный разбор большого CSV файла с книгами.
+ * <p>
+ * Файл делится на диапазоны байтов, которые выравниваются по границам записей с учетом кавычек:
+ * сначала параллельно считается число кавычек в каждом диапазоне, по их четности определяется,
+ * начинается ли диапазон внутри поля в кавычках, и граница сдвигается на первый перевод строки вне кавычек.
+ * Затем диапазоны разбираются {@link MappedCsvReader} в {@link ForkJoinPool},
+ * а результаты склеиваются в порядке файла. Некорректные строки попадают в {@link ImportReport}.
+ * <p>
+ * Четность - только догадка: кавычка внутри поля без кавычек ({@code 1,a"b,...}) сдвигает ее до конца файла.
+ * Поэтому каждая граница проверяется разбором: первый диапазон начинается с начала файла, и если последняя
+ * запись диапазона кончается ровно на следующей границе, то и она - начало записи. С первой неподтвержденной
+ * границы остаток файла разбирается последовательно, как без распараллеливания.
+ */
+public class ParallelCsvImporter {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+
+    private final int parallelism;
+    private final BookInterner interner;
+
+    public ParallelCsvImporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelCsvImporter(int parallelism) {
+        this(parallelism, BookInterner.NONE);
+    }
+
+    /**
+     * @param parallelism число потоков разбора.
+     * @param interner    словари, через которые проходят названия и авторы разобранных книг.
+     */
+    public ParallelCsvImporter(int parallelism, BookInterner interner) {
+        this.parallelism = Math.max(1, parallelism);
+        this.interner = interner;
+    }
+
+    /**
+     * Разбирает CSV файл со строкой заголовка.
+     *
+     * @param path путь к файлу.
+     * @return книги в порядке файла и список ошибок.
+     * @throws IOException если файл не удалось прочитать.
+     */
+    public ImportReport importFile(Path path) throws IOException {
+        long started = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] starts = split(size);
+            int chunks = starts.length - 1;
+
+            long[] quotes = new long[chunks];
+            pool.submit(() -> IntStream.range(0, chunks).parallel()
+                    .forEach(i -> quotes[i] = countQuotes(channel, starts[i], starts[i + 1]))).join();
+
+            // число кавычек до начала диапазона: нечетное значит, что диапазон начинается внутри кавычек
+            long[] quotesBefore = new long[chunks];
+            for (int i = 1; i < chunks; i++) {
+                quotesBefore[i] = quotesBefore[i - 1] + quotes[i - 1];
+            }
+            long[] bounds = new long[chunks + 1];
+            bounds[chunks] = size;
+            pool.submit(() -> IntStream.range(1, chunks).parallel()
+                    .forEach(i -> bounds[i] = recordStart(channel, starts[i], size, (quotesBefore[i] & 1) == 1)))
+                    .join();
+            for (int i = 1; i <= chunks; i++) {
+                // граница могла уйти за следующий диапазон, если запись очень длинная
+                bounds[i] = Math.max(bounds[i], bounds[i - 1]);
+            }
+
+            List<ChunkResult> results = pool.submit(() -> IntStream.range(0, chunks).parallel()
+                    .mapToObj(i -> parseChunk(path, bounds[i], bounds[i + 1], i == 0))
+                    .toList()).join();
+            int verified = verifiedChunks(results, bounds);
+            if (verified < chunks) {
+                // граница разошлась с разбором - дальше ее диапазоны недостоверны
+                results = new ArrayList<>(results.subList(0, verified));
+                results.add(parseChunk(path, bounds[verified], size, verified == 0));
+            }
+
+            int total = 0;
+            for (ChunkResult result : results) {
+                total += result.books.size();
+            }
+            List<Book> books = new ArrayList<>(total);
+            List<ImportError> errors = new ArrayList<>();
+            for (ChunkResult result : results) {
+                books.addAll(result.books);
+                errors.addAll(result.errors);
+            }
+            return new ImportReport(books, errors, size, System.nanoTime() - started);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private long[] split(long size) {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (parallelism * 4L) + 1));
+        int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        long[] starts = new long[chunks + 1];
+        for (int i = 0; i < chunks; i++) {
+            starts[i] = i * chunkSize;
+        }
+        starts[chunks] = size;
+        return starts;
+    }
+
+    private static long countQuotes(FileChannel channel, long from, long to) {
+        MappedByteBuffer buffer = map(channel, from, to - from);
+        long count = 0;
+        for (int i = 0, limit = buffer.limit(); i < limit; i++) {
+            if (buffer.get(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Находит начало первой записи не раньше {@code from}: позицию после перевода строки вне кавычек.
+     */
+    private static long recordStart(FileChannel channel, long from, long size, boolean inQuotes) {
+        long position = from;
+        while (position < size) {
+            long length = Math.min(MAX_CHUNK_SIZE, size - position);
+            MappedByteBuffer buffer = map(channel, position, length);
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает число диапазонов подряд с начала файла, у которых последняя запись кончается
+     * ровно на следующей границе. Следующий за ними диапазон начинается с настоящего начала записи.
+     */
+    private static int verifiedChunks(List<ChunkResult> results, long[] bounds) {
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).end != bounds[i + 1]) {
+                return i;
+            }
+        }
+        return results.size();
+    }
+
+    private ChunkResult parseChunk(Path path, long from, long to, boolean skipHeader) {
+        ChunkResult result = new ChunkResult();
+        result.end = from;
+        if (from >= to) {
+            return result;
+        }
+        try (MappedCsvReader reader = new MappedCsvReader(path)) {
+            reader.forEach(from, to, skipHeader, record -> {
+                try {
+                    result.books.add(BookRepository.toBook(record, interner));
+                } catch (RuntimeException e) {
+                    result.errors.add(new ImportError(record.offset(), e.getMessage()));
+                }
+            });
+            result.end = reader.endPosition();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ChunkResult {
+        private final List<Book> books = new ArrayList<>();
+        private final List<ImportError> errors = new ArrayList<>();
+        private long end;
+    }
+
+    /**
+     * Результат импорта: книги в порядке файла и отчет о некорректных строках.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ImportReport {
+        private final List<Book> books;
+        private final List<ImportError> errors;
+        private final long bytes;
+        private final long elapsedNanos;
+    }
+
+    /**
+     * Некорректная строка файла.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ImportError {
+        /**
+         * Смещение начала строки в файле.
+         */
+        private final long offset;
+        private final String message;
+
+        @Override
+        public String toString() {
+            return "byte " + offset + ": " + message;
+        }
+    }
+}
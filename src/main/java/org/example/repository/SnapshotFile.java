@@ -0,0 +1,218 @@
+package org.example.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Надежная запись файлов снимка каталога.
+ * <p>
+ * Снимок пишется во временный файл, в конец дописывается строка-трейлер
+ * {@code #books crc32c=... rows=... length=...} с контрольной суммой и числом книг,
+ * файл сбрасывается на диск и атомарно переименовывается поверх старого.
+ * Сбой или нехватка места во время записи оставляют старый снимок целым.
+ * Предыдущее поколение сохраняется рядом с расширением {@code .prev} (жесткой ссылкой, без копирования),
+ * чтобы при поврежденном снимке можно было загрузить его.
+ * <p>
+ * Трейлер начинается с {@code #}, и читатели CSV пропускают его как комментарий.
+ * Проверка считает CRC32C по байтам файла до трейлера, без разбора записей.
+ * Строки, дописанные после трейлера (CSV файл без журнала), проверкой не покрываются.
+ * Несовпадение суммы у целого файла означает правку извне, а поврежденным считается только оборванный файл:
+ * до трейлера меньше байтов, чем было запечатано, или в файле есть нулевые байты недописанных страниц.
+ */
+public final class SnapshotFile {
+
+    private static final String TRAILER_PREFIX = "#books ";
+    private static final Pattern TRAILER = Pattern.compile(
+            "#books crc32c=([0-9a-f]{8}) rows=(\\d+) length=(\\d+)\n?$");
+    private static final int TRAILER_SEARCH = 128;
+    private static final int CHECKSUM_WINDOW = 64 << 20;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Результат проверки снимка.
+     */
+    public enum Status {
+        /**
+         * Контрольная сумма совпала.
+         */
+        VALID,
+        /**
+         * Трейлера нет или файл изменили после записи: он записан без трейлера, после трейлера
+         * дописаны строки или файл отредактирован извне, и контрольная сумма не совпала.
+         */
+        UNSEALED,
+        /**
+         * Файл оборван: до трейлера меньше байтов, чем было записано, или в нем есть нулевые байты.
+         */
+        CORRUPTED
+    }
+
+    /**
+     * Результат проверки: статус и число книг из трейлера (-1 без трейлера).
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Verification {
+        private final Status status;
+        private final long rows;
+    }
+
+    /**
+     * Возвращает путь предыдущего поколения снимка.
+     */
+    public static Path previousOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".prev");
+    }
+
+    /**
+     * Возвращает путь временного файла, в который пишется новый снимок.
+     */
+    public static Path tempOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * Дописывает трейлер с контрольной суммой содержимого и сбрасывает файл на диск.
+     *
+     * @param file  записанный снимок.
+     * @param rows  число книг в снимке.
+     * @param fsync сбросить содержимое на диск перед возвратом.
+     * @throws IOException если произошла ошибка чтения или записи.
+     */
+    public static void seal(Path file, long rows, boolean fsync) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            long checksum = checksum(channel, length);
+            byte[] trailer = String.format("%scrc32c=%08x rows=%d length=%d\n", TRAILER_PREFIX, checksum, rows, length)
+                    .getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer buffer = ByteBuffer.wrap(trailer);
+            long position = length;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Заменяет снимок новым файлом. Текущий снимок становится предыдущим поколением,
+     * а новый переименовывается на его место атомарно, поэтому файл снимка существует всегда.
+     *
+     * @param temp   новый снимок с трейлером.
+     * @param target файл снимка.
+     * @param fsync  сбросить на диск запись каталога после переименования.
+     * @return true, если прежний снимок стал предыдущим поколением, false, если снимка не было.
+     * @throws IOException если файлы не удалось переименовать.
+     */
+    public static boolean publish(Path temp, Path target, boolean fsync) throws IOException {
+        boolean rotated = Files.exists(target);
+        if (rotated) {
+            Path previous = previousOf(target);
+            Files.deleteIfExists(previous);
+            try {
+                Files.createLink(previous, target);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(target, previous, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync) {
+            syncDirectory(target.toAbsolutePath().getParent());
+        }
+        return rotated;
+    }
+
+    /**
+     * Проверяет контрольную сумму снимка по трейлеру.
+     *
+     * @param file файл снимка.
+     * @throws IOException если файл не удалось прочитать.
+     */
+    public static Verification verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int tailLength = (int) Math.min(size, TRAILER_SEARCH);
+            ByteBuffer tail = ByteBuffer.allocate(tailLength);
+            while (tail.hasRemaining() && channel.read(tail, size - tailLength + tail.position()) >= 0) {
+                // читаем хвост файла целиком
+            }
+            String text = new String(tail.array(), 0, tail.position(), StandardCharsets.ISO_8859_1);
+            int start = text.lastIndexOf(TRAILER_PREFIX);
+            if (start < 0) {
+                return new Verification(Status.UNSEALED, -1);
+            }
+            Matcher matcher = TRAILER.matcher(text.substring(start));
+            if (!matcher.matches()) {
+                return new Verification(Status.UNSEALED, -1);
+            }
+            long expectedChecksum = Long.parseLong(matcher.group(1), 16);
+            long rows = Long.parseLong(matcher.group(2));
+            long length = Long.parseLong(matcher.group(3));
+            long contentLength = size - tailLength + start;
+            if (length > contentLength) {
+                // часть запечатанных байтов пропала: файл обрезан или записан не целиком
+                return new Verification(Status.CORRUPTED, rows);
+            }
+            if (length == contentLength && checksum(channel, length) == expectedChecksum) {
+                return new Verification(Status.VALID, rows);
+            }
+            return containsZero(channel, contentLength)
+                    ? new Verification(Status.CORRUPTED, rows)
+                    : new Verification(Status.UNSEALED, -1);
+        }
+    }
+
+    /**
+     * Ищет нулевой байт: в CSV его не бывает, а страницы, не попавшие на диск при сбое, читаются нулями.
+     */
+    private static boolean containsZero(FileChannel channel, long length) throws IOException {
+        for (long position = 0; position < length; position += CHECKSUM_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(CHECKSUM_WINDOW, length - position));
+            for (int i = 0, limit = window.limit(); i < limit; i++) {
+                if (window.get(i) == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long checksum(FileChannel channel, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long position = 0; position < length; position += CHECKSUM_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(CHECKSUM_WINDOW, length - position));
+            crc.update(window);
+        }
+        return crc.getValue();
+    }
+
+    private static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // не все файловые системы позволяют открыть каталог, переименование уже выполнено
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.repository;
+
+import org.example.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасный каталог книг поверх {@link BookMap} с чтением без блокировок.
+ * <p>
+ * Поиск по ID выполняется оптимистично ({@link StampedLock#tryOptimisticRead()}): читатель ничего не блокирует
+ * и не пишет в общую память, а если во время чтения карта менялась, повторяет чтение под блокировкой чтения.
+ * Изменения выполняются под блокировкой записи и занимают время одной операции с картой.
+ * Перечитанный каталог собирается отдельно и подменяется целиком через {@link #replace(BookMap)}.
+ * <p>
+ * При каждом сохранении в карту кладется копия книги с новой {@link Book#getVersion() версией} из общего счетчика,
+ * поэтому версии не повторяются и после перечитывания каталога, а объект вызывающего кода не меняется.
+ */
+public class StampedBookMap {
+
+    private final StampedLock lock = new StampedLock();
+    private BookMap map;
+    private long lastVersion;
+
+    public StampedBookMap() {
+        this(new IntBookMap());
+    }
+
+    /**
+     * @param empty пустая карта, в которой будут храниться книги.
+     */
+    public StampedBookMap(BookMap empty) {
+        this.map = empty;
+    }
+
+    public Book get(int id) {
+        return read(map -> map.get(id));
+    }
+
+    public boolean containsKey(int id) {
+        return read(map -> map.containsKey(id));
+    }
+
+    /**
+     * Возвращает книги по списку ID в том же порядке, пропуская отсутствующие.
+     */
+    public List<Book> getAll(int[] ids) {
+        return read(map -> {
+            List<Book> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Book book = map.get(id);
+                if (book != null) {
+                    result.add(book);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Возвращает список книг в порядке добавления, см. {@link BookMap#values()}.
+     */
+    public List<Book> values() {
+        long stamp = lock.readLock();
+        try {
+            return map.values();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Возвращает слабо согласованный поток книг, см. {@link BookMap#stream()}.
+     * Массивы для потока берутся оптимистично и повторно под блокировкой чтения, если карта в это время менялась.
+     */
+    public Stream<Book> stream() {
+        return read(BookMap::stream);
+    }
+
+    public int size() {
+        return read(BookMap::size);
+    }
+
+    /**
+     * Сохраняет копию книги с новой версией. Переданный объект не меняется.
+     *
+     * @return предыдущая книга с этим ID или null.
+     */
+    public Book put(Book book) {
+        Book stored = new Book(book.getId(), book.getTitle(), book.getAuthor(), book.getDescription());
+        long stamp = lock.writeLock();
+        try {
+            stored.setVersion(++lastVersion);
+            return map.put(stored.getId(), stored);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет книгу по ID.
+     *
+     * @return удаленная книга или null, если ее не было.
+     */
+    public Book remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            return map.remove(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Подменяет каталог целиком и назначает версии всем его книгам.
+     *
+     * @param loaded новый каталог, после вызова изменяется только через этот объект.
+     */
+    public void replace(BookMap loaded) {
+        long stamp = lock.writeLock();
+        try {
+            loaded.assignVersions(() -> ++lastVersion);
+            map = loaded;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private <T> T read(Function<BookMap, T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.apply(map);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // карта менялась во время чтения и была в несогласованном состоянии
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.apply(map);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
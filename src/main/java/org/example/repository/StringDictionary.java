@@ -0,0 +1,148 @@
+package org.example.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограниченный потокобезопасный словарь строк: каждой новой строке назначается номер,
+ * а равные строки заменяются одним экземпляром.
+ * <p>
+ * Поиск уже известной строки выполняется без блокировок, добавление новой - под монитором словаря.
+ * Номера не переиспользуются, поэтому их можно хранить вместо строк. Когда словарь заполнен
+ * ({@code maxEntries}) или строка длиннее {@code maxLength}, строка не добавляется и остается как есть.
+ * <p>
+ * Строка добавляется в словарь только при второй встрече. Первая встреча отмечается хешем строки
+ * в таблице фиксированного размера без самих строк, поэтому уникальные значения (например, названия
+ * большинства книг) не занимают узлы словаря и не вытесняют из него действительно повторяющиеся значения.
+ * Совпадение хешей только добавляет строку раньше, а затертая отметка - позже.
+ */
+public class StringDictionary {
+
+    /**
+     * Номер для строк, которых нет в словаре.
+     */
+    public static final int ABSENT = -1;
+
+    private static final int MIN_SEEN = 1 << 10;
+    private static final int MAX_SEEN = 1 << 20;
+
+    private final int maxEntries;
+    private final int maxLength;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private volatile int size;
+
+    /**
+     * Хеши строк, встреченных один раз, 0 - пустая ячейка. Таблица растет вдвое, когда в нее записано
+     * больше отметок, чем в ней ячеек, до {@link #MAX_SEEN} ячеек. Гонки при записи допустимы:
+     * потерянная отметка лишь откладывает добавление строки.
+     */
+    private volatile int[] seen = new int[MIN_SEEN];
+    private int seenMarks;
+
+    /**
+     * @param maxEntries максимальное количество строк в словаре.
+     * @param maxLength  максимальная длина строки, более длинные строки не добавляются.
+     */
+    public StringDictionary(int maxEntries, int maxLength) {
+        this.maxEntries = maxEntries;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Возвращает экземпляр строки из словаря, добавляя строку, если есть место.
+     *
+     * @param value строка, может быть null.
+     * @return равная строка из словаря или сама строка.
+     */
+    public String intern(String value) {
+        int id = idOf(value);
+        return id == ABSENT ? value : values[id];
+    }
+
+    /**
+     * Возвращает номер строки, добавляя строку, если есть место.
+     *
+     * @param value строка, может быть null.
+     * @return номер строки или {@link #ABSENT}, если строка null, слишком длинная или словарь заполнен.
+     */
+    public int idOf(String value) {
+        if (value == null || value.length() > maxLength) {
+            return ABSENT;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (size >= maxEntries || !seenBefore(value)) {
+            return ABSENT;
+        }
+        return add(value);
+    }
+
+    /**
+     * Возвращает номер строки, если она уже есть в словаре, ничего не добавляя и не отмечая встречу.
+     *
+     * @param value строка, может быть null.
+     * @return номер строки или {@link #ABSENT}.
+     */
+    public int find(String value) {
+        if (value == null) {
+            return ABSENT;
+        }
+        Integer id = ids.get(value);
+        return id == null ? ABSENT : id;
+    }
+
+    /**
+     * Возвращает строку по номеру, полученному от {@link #idOf(String)}.
+     */
+    public String valueOf(int id) {
+        return values[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Проверяет, встречалась ли строка раньше, и отмечает ее встречу.
+     */
+    private boolean seenBefore(String value) {
+        int hash = value.hashCode();
+        hash = (hash ^ (hash >>> 16)) | 1;
+        int[] table = seen;
+        int slot = (hash >>> 1) & (table.length - 1);
+        if (table[slot] == hash) {
+            return true;
+        }
+        table[slot] = hash;
+        if (++seenMarks > table.length && table.length < Math.min(MAX_SEEN, maxEntries)) {
+            seen = new int[table.length * 2];
+            seenMarks = 0;
+        }
+        return false;
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = ids.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        if (id >= maxEntries) {
+            return ABSENT;
+        }
+        String[] current = values;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, (int) Math.min(maxEntries, current.length * 2L));
+        }
+        current[id] = value;
+        // строка публикуется в массиве раньше номера, поэтому по найденному номеру она всегда видна
+        values = current;
+        ids.put(value, id);
+        size = id + 1;
+        return id;
+    }
+}
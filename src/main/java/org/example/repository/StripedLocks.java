@@ -0,0 +1,34 @@
+package org.example.repository;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Блокировки, разделенные по ID книги на полосы.
+ * Изменения одной книги выполняются по очереди, а изменения книг из разных полос - параллельно.
+ * Количество блокировок не зависит от размера каталога.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes количество полос, округляется вверх до степени двойки.
+     */
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Возвращает блокировку полосы, в которую попадает ID.
+     */
+    public ReentrantLock lockFor(int id) {
+        int h = id * 0x9E3779B9;
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
@@ -1,47 +1,86 @@
 package org.example.service;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.example.index.BookSearchIndex;
+import org.example.index.BookSortedIndex;
 import org.example.model.Book;
 import org.example.repository.BookRepository;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.MessageSource;
+import org.example.repository.BookWriteException;
+import org.example.repository.DuplicateBookException;
+import org.example.utils.MessageCatalog;
+import org.example.utils.MessageKey;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.Locale;
+import java.util.stream.Stream;
 
 /**
  * Сервис для управления книгами.
  * Предоставляет методы для создания, редактирования, удаления и вывода списка книг.
+ * Сервис можно вызывать из многих потоков: проверка и изменение книги выполняются репозиторием
+ * одной операцией под блокировкой ID книги, а изменения по устаревшей версии книги отклоняются.
+ * Пакетные методы {@link #createBooks}, {@link #editBooks} и {@link #deleteBooks} применяют много изменений
+ * за одну запись на диск и возвращают результат для каждой книги.
  */
 
 @Service
 @RequiredArgsConstructor
 public class BookService {
 
-    @Value("${color.error}")
-    private String error;
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSortedIndex bookSortedIndex;
+    private final MessageCatalog messageCatalog;
 
-    @Value("${color.reset}")
-    private String reset;
+    /**
+     * Результат изменения книги с ключом сообщения для пользователя.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum Outcome {
+        ADDED(MessageKey.SERVICE_ADD_BOOK, true),
+        UPDATED(MessageKey.SERVICE_EDIT_BOOK, true),
+        DELETED(MessageKey.SERVICE_DELETE_BOOK, true),
+        DUPLICATE_ID(MessageKey.SERVICE_DUPLICATE_ID, false),
+        NOT_FOUND(MessageKey.SERVICE_NOT_FOUND_BOOK_BY_ID, false),
+        VERSION_CONFLICT(MessageKey.SERVICE_VERSION_CONFLICT, false),
+        WRITE_ERROR(MessageKey.SERVICE_FILE_WRITE_ERROR, false);
 
-    private final BookRepository bookRepository;
-    private final MessageSource messageSource;
+        private final MessageKey messageKey;
+        private final boolean success;
+    }
 
     /**
-     * Создает новую книгу и добавляет ее в репозиторий.
+     * Создает новую книгу и добавляет ее в репозиторий, если книги с таким ID еще нет.
      *
      * @param currentLocale локаль языка, установленная пользователем.
      * @param book          Книга для добавления.
      */
     public void createBook(Book book, Locale currentLocale) {
-        if (bookRepository.addBook(book) == null) {
-            System.out.println(error +
-                    messageSource.getMessage("service.fileWriteError", null, currentLocale) +
-                    reset);
-        } else {
-            System.out.println(messageSource.getMessage("service.addBook", null, currentLocale));
+        print(create(book), currentLocale);
+    }
+
+    /**
+     * Добавляет книгу в репозиторий, если книги с таким ID еще нет, ничего не выводя.
+     *
+     * @param book Книга для добавления.
+     * @return {@link Outcome#ADDED}, {@link Outcome#DUPLICATE_ID} или {@link Outcome#WRITE_ERROR}.
+     */
+    public Outcome create(Book book) {
+        try {
+            bookRepository.addBook(book);
+        } catch (DuplicateBookException e) {
+            return Outcome.DUPLICATE_ID;
+        } catch (BookWriteException e) {
+            return Outcome.WRITE_ERROR;
         }
+        return Outcome.ADDED;
     }
 
     /**
@@ -56,29 +95,54 @@ public class BookService {
         }
     }
 
+    /**
+     * Возвращает поток всех книг без копирования каталога в список.
+     */
+    public Stream<Book> streamBooks() {
+        return bookRepository.streamBooks();
+    }
+
+    /**
+     * Возвращает страницу списка книг, упорядоченного по ID.
+     * Страница выбирается по позиции в {@link BookSortedIndex}, без пропуска книг с начала каталога.
+     *
+     * @param offset сколько книг пропустить с начала списка.
+     * @param limit  максимальное количество книг на странице.
+     * @return книги страницы, пустой список если страница за пределами каталога.
+     */
+    public List<Book> readBooksPage(int offset, int limit) {
+        bookRepository.refreshIfModified();
+        return bookSortedIndex.page(offset, limit);
+    }
+
     /**
      * Редактирует существующую книгу.
+     * Если у книги указана версия, а книгу уже изменили, изменение не сохраняется.
      *
      * @param currentLocale локаль языка, установленная пользователем.
      * @param updatedBook   Обновленная книга.
      */
     public void editBook(Book updatedBook, Locale currentLocale) {
-        List<Book> books = bookRepository.readBooks();
-        Integer index = findBookById(books, updatedBook.getId(), currentLocale);
-        if (index == null) {
-            return;
-        }
+        print(edit(updatedBook), currentLocale);
+    }
 
-        for (Book book : books) {
-            if (book.getId() == updatedBook.getId()) {
-                book.setTitle(updatedBook.getTitle());
-                book.setAuthor(updatedBook.getAuthor());
-                book.setDescription(updatedBook.getDescription());
-                break;
-            }
+    /**
+     * Сохраняет измененную книгу, ничего не выводя.
+     *
+     * @param updatedBook Обновленная книга.
+     * @return {@link Outcome#UPDATED}, {@link Outcome#NOT_FOUND}, {@link Outcome#VERSION_CONFLICT}
+     * или {@link Outcome#WRITE_ERROR}.
+     */
+    public Outcome edit(Book updatedBook) {
+        Book previous;
+        try {
+            previous = bookRepository.editBook(updatedBook);
+        } catch (ConcurrentModificationException e) {
+            return Outcome.VERSION_CONFLICT;
+        } catch (BookWriteException e) {
+            return Outcome.WRITE_ERROR;
         }
-        bookRepository.editBook(books);
-        System.out.println(messageSource.getMessage("service.editBook", null, currentLocale));
+        return previous == null ? Outcome.NOT_FOUND : Outcome.UPDATED;
     }
 
     /**
@@ -88,14 +152,94 @@ public class BookService {
      * @param id            ID книги для удаления.
      */
     public void deleteBook(int id, Locale currentLocale) {
-        List<Book> books = bookRepository.readBooks();
-        Integer index = findBookById(books, id, currentLocale);
-        if (index == null) {
-            return;
+        print(delete(id), currentLocale);
+    }
+
+    /**
+     * Удаляет книгу по ID, ничего не выводя.
+     *
+     * @param id ID книги для удаления.
+     * @return {@link Outcome#DELETED}, {@link Outcome#NOT_FOUND} или {@link Outcome#WRITE_ERROR}.
+     */
+    public Outcome delete(int id) {
+        Book removed;
+        try {
+            removed = bookRepository.deleteBook(id);
+        } catch (BookWriteException e) {
+            return Outcome.WRITE_ERROR;
+        }
+        return removed == null ? Outcome.NOT_FOUND : Outcome.DELETED;
+    }
+
+    /**
+     * Добавляет книги одним пакетом: одна проверка по каталогу и одна запись на диск, ничего не выводя.
+     *
+     * @param books книги для добавления.
+     * @return результаты в порядке книг: {@link Outcome#ADDED}, {@link Outcome#DUPLICATE_ID}
+     * или {@link Outcome#WRITE_ERROR} для всех книг пакета, если его не удалось записать.
+     */
+    public List<Outcome> createBooks(Collection<Book> books) {
+        List<Book> batch = List.copyOf(books);
+        try {
+            return outcomes(bookRepository.addBooks(batch), Outcome.ADDED);
+        } catch (BookWriteException e) {
+            return Collections.nCopies(batch.size(), Outcome.WRITE_ERROR);
         }
-        books.remove((int) index);
-        bookRepository.deleteBook(books, id);
-        System.out.println(messageSource.getMessage("service.deleteBook", null, currentLocale));
+    }
+
+    /**
+     * Сохраняет измененные книги одним пакетом, ничего не выводя.
+     *
+     * @param books обновленные книги.
+     * @return результаты в порядке книг: {@link Outcome#UPDATED}, {@link Outcome#NOT_FOUND},
+     * {@link Outcome#VERSION_CONFLICT} или {@link Outcome#WRITE_ERROR}.
+     */
+    public List<Outcome> editBooks(Collection<Book> books) {
+        List<Book> batch = List.copyOf(books);
+        try {
+            return outcomes(bookRepository.editBooks(batch), Outcome.UPDATED);
+        } catch (BookWriteException e) {
+            return Collections.nCopies(batch.size(), Outcome.WRITE_ERROR);
+        }
+    }
+
+    /**
+     * Удаляет книги по ID одним пакетом, ничего не выводя.
+     *
+     * @param ids ID книг для удаления.
+     * @return результаты в порядке ID: {@link Outcome#DELETED}, {@link Outcome#NOT_FOUND}
+     * или {@link Outcome#WRITE_ERROR}.
+     */
+    public List<Outcome> deleteBooks(Collection<Integer> ids) {
+        int[] batch = ids.stream().mapToInt(Integer::intValue).toArray();
+        try {
+            return outcomes(bookRepository.deleteBooks(batch), Outcome.DELETED);
+        } catch (BookWriteException e) {
+            return Collections.nCopies(batch.length, Outcome.WRITE_ERROR);
+        }
+    }
+
+    private static List<Outcome> outcomes(BookRepository.BatchStatus[] statuses, Outcome applied) {
+        List<Outcome> outcomes = new ArrayList<>(statuses.length);
+        for (BookRepository.BatchStatus status : statuses) {
+            outcomes.add(switch (status) {
+                case APPLIED -> applied;
+                case DUPLICATE_ID -> Outcome.DUPLICATE_ID;
+                case NOT_FOUND -> Outcome.NOT_FOUND;
+                case VERSION_CONFLICT -> Outcome.VERSION_CONFLICT;
+            });
+        }
+        return outcomes;
+    }
+
+    /**
+     * Возвращает книгу по ID.
+     *
+     * @param id ID книги.
+     * @return Книга или null, если книги с таким ID нет.
+     */
+    public Book findBookById(int id) {
+        return bookRepository.findBookById(id);
     }
 
     /**
@@ -106,30 +250,67 @@ public class BookService {
      */
 
     public List<Book> findBooksByName(String bookName) {
-        List<Book> books = bookRepository.readBooks();
+        bookRepository.refreshIfModified();
+        int[] candidates = bookSearchIndex.candidates(bookName);
+        Stream<Book> books = candidates == null
+                ? bookRepository.streamBooks()
+                : bookRepository.findBooksByIds(candidates).stream();
 
-        return  books.stream()
+        return  books
                 .filter(book -> book.getTitle()
                 .equalsIgnoreCase(bookName)).toList();
     }
 
     /**
-     * Находит индекс книги в списке по ID.
+     * Ищет книги по словам из названия, автора и описания.
+     * Книга должна содержать все слова запроса, слово с {@code *} на конце ищется по префиксу.
+     * Регистр и различие «ё»/«е» не учитываются.
      *
-     * @param books         Список книг.
-     * @param currentLocale локаль языка, установленная пользователем.
-     * @param id            ID книги для поиска.
-     * @return Индекс книги в списке или null, если книга не найдена.
-     */
-    private Integer findBookById(List<Book> books, int id, Locale currentLocale) {
-        for (int i = 0; i < books.size(); i++) {
-            if (books.get(i).getId() == id) {
-                return i;
-            }
-        }
-        System.out.println(error +
-                messageSource.getMessage("service.notFoundBookById", null, currentLocale) +
-                reset);
-        return null;
+     * @param query строка запроса.
+     * @return список найденных книг, упорядоченный по ID.
+     */
+    public List<Book> searchBooks(String query) {
+        bookRepository.refreshIfModified();
+        return bookRepository.findBooksByIds(bookSearchIndex.search(query));
+    }
+
+    /**
+     * Возвращает книги автора без учета регистра.
+     *
+     * @param author автор книги.
+     * @param limit  максимальное количество книг.
+     * @return список книг автора, упорядоченный по ID.
+     */
+    public List<Book> findBooksByAuthor(String author, int limit) {
+        bookRepository.refreshIfModified();
+        return bookSortedIndex.findByAuthor(author, limit);
+    }
+
+    /**
+     * Возвращает книги с ID от {@code fromId} до {@code toId} включительно.
+     *
+     * @param limit максимальное количество книг.
+     * @return список книг, упорядоченный по ID.
+     */
+    public List<Book> findBooksByIdRange(int fromId, int toId, int limit) {
+        bookRepository.refreshIfModified();
+        return bookSortedIndex.findByIdRange(fromId, toId, limit);
+    }
+
+    /**
+     * Возвращает первые книги каталога, упорядоченные по ID или по автору.
+     *
+     * @param order порядок сортировки.
+     * @param limit максимальное количество книг.
+     */
+    public List<Book> readBooksSorted(BookSortedIndex.SortOrder order, int limit) {
+        bookRepository.refreshIfModified();
+        return bookSortedIndex.sorted(order, limit);
+    }
+
+    private void print(Outcome outcome, Locale currentLocale) {
+        System.out.println(outcome.isSuccess()
+                ? messageCatalog.get(outcome.getMessageKey(), currentLocale)
+                : messageCatalog.error(outcome.getMessageKey(), currentLocale));
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,328 @@
+package org.example.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.example.metrics.BookMetrics;
+import org.example.model.Book;
+import org.example.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Выгрузка каталога в файлы CSV и JSON Lines и загрузка из них.
+ * <p>
+ * Книги пишутся и читаются потоком по одной через генераторы и парсеры Jackson, поэтому память
+ * не зависит от размера файла: выгрузка обходит каталог без копирования в список,
+ * а загрузка передает книги в репозиторий пакетами по {@code transfer.batchSize}.
+ * Формат определяется по расширению файла ({@code .csv}, {@code .jsonl}, {@code .ndjson}),
+ * расширение {@code .gz} включает сжатие gzip. При загрузке сжатый файл распознается по сигнатуре.
+ */
+@Service
+@RequiredArgsConstructor
+public class BookTransferService {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final BookRepository bookRepository;
+    private final BookMetrics bookMetrics;
+
+    @Value("${transfer.batchSize:4096}")
+    private int batchSize;
+
+    @Value("${transfer.bufferSize:262144}")
+    private int bufferSize;
+
+    @Value("${transfer.gzipLevel:1}")
+    private int compressionLevel;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final CsvSchema csvSchema = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("title")
+            .addColumn("author")
+            .addColumn("description")
+            .setUseHeader(true)
+            .setQuoteChar('"')
+            .setAllowComments(true)
+            .build();
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    /**
+     * Формат файла выгрузки.
+     */
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        /**
+         * Определяет формат по расширению файла, не учитывая {@code .gz}.
+         *
+         * @throws IllegalArgumentException если расширение не поддерживается.
+         */
+        public static Format of(Path file) {
+            String name = stripGzip(file.getFileName().toString().toLowerCase(Locale.ROOT));
+            if (name.endsWith(".csv")) {
+                return CSV;
+            }
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            throw new IllegalArgumentException("Unsupported file format: " + file.getFileName());
+        }
+    }
+
+    /**
+     * Итог выгрузки или загрузки.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class TransferReport {
+        /**
+         * Количество выгруженных или загруженных книг.
+         */
+        private final long books;
+        /**
+         * Количество пропущенных при загрузке некорректных записей.
+         */
+        private final long skipped;
+        /**
+         * Размер файла в байтах.
+         */
+        private final long bytes;
+    }
+
+    /**
+     * Возвращает условие отбора книг, как при поиске сервисом: по названию и по автору без учета регистра.
+     *
+     * @param title  название книги, пустое или null - любое.
+     * @param author автор книги, пустой или null - любой.
+     */
+    public static Predicate<Book> matching(String title, String author) {
+        Predicate<Book> filter = book -> true;
+        if (title != null && !title.isBlank()) {
+            filter = filter.and(book -> title.equalsIgnoreCase(book.getTitle()));
+        }
+        if (author != null && !author.isBlank()) {
+            filter = filter.and(book -> author.equalsIgnoreCase(book.getAuthor()));
+        }
+        return filter;
+    }
+
+    /**
+     * Выгружает книги каталога в файл, формат и сжатие определяются по расширению.
+     *
+     * @param target файл выгрузки, перезаписывается.
+     * @param filter условие отбора книг.
+     * @return количество выгруженных книг и размер файла.
+     * @throws UncheckedIOException если произошла ошибка при записи.
+     */
+    public TransferReport export(Path target, Predicate<Book> filter) {
+        return export(target, Format.of(target), isGzip(target), filter);
+    }
+
+    /**
+     * Выгружает книги каталога в файл.
+     *
+     * @param target файл выгрузки, перезаписывается.
+     * @param format формат файла.
+     * @param gzip   сжать файл gzip.
+     * @param filter условие отбора книг.
+     * @return количество выгруженных книг и размер файла.
+     * @throws UncheckedIOException если произошла ошибка при записи.
+     */
+    public TransferReport export(Path target, Format format, boolean gzip, Predicate<Book> filter) {
+        long exported = bookMetrics.time("BookTransferService.export", () -> {
+            try (Stream<Book> books = bookRepository.streamBooks();
+                 OutputStream out = output(target, gzip)) {
+                return format == Format.CSV
+                        ? writeCsv(books.filter(filter).iterator(), out)
+                        : writeJsonLines(books.filter(filter).iterator(), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error exporting books: " + e.getMessage(), e);
+            }
+        });
+        long bytes = target.toFile().length();
+        bookMetrics.recordWrite(exported, bytes);
+        return new TransferReport(exported, 0, bytes);
+    }
+
+    /**
+     * Загружает книги из файла в каталог, формат определяется по расширению, а сжатие - по сигнатуре файла.
+     * Книги с уже существующими ID заменяются, некорректные записи пропускаются.
+     *
+     * @param source файл выгрузки.
+     * @param filter условие отбора книг.
+     * @return количество загруженных и пропущенных книг.
+     * @throws UncheckedIOException если файл не удалось прочитать или он поврежден так, что записи нельзя разделить.
+     *                              Книги, загруженные до ошибки, остаются в каталоге.
+     */
+    public TransferReport importBooks(Path source, Predicate<Book> filter) {
+        return importBooks(source, Format.of(source), filter);
+    }
+
+    /**
+     * Загружает книги из файла в каталог.
+     *
+     * @param source файл выгрузки, сжатие gzip определяется по сигнатуре.
+     * @param format формат файла.
+     * @param filter условие отбора книг.
+     * @return количество загруженных и пропущенных книг.
+     * @throws UncheckedIOException если файл не удалось прочитать или он поврежден так, что записи нельзя разделить.
+     *                              Книги, загруженные до ошибки, остаются в каталоге.
+     */
+    public TransferReport importBooks(Path source, Format format, Predicate<Book> filter) {
+        long[] skipped = new long[1];
+        long imported = bookMetrics.time("BookTransferService.importBooks", () -> {
+            ObjectReader reader = format == Format.CSV
+                    ? csvMapper.readerFor(Book.class).with(csvSchema)
+                    : jsonMapper.readerFor(Book.class);
+            try (InputStream in = input(source);
+                 MappingIterator<Book> records = reader.readValues(in)) {
+                Iterator<Book> books = skippingErrors(records, skipped);
+                return bookRepository.importBooks(filtered(books, filter), batchSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error importing books: " + e.getMessage(), e);
+            }
+        });
+        long bytes = source.toFile().length();
+        bookMetrics.recordRead(imported, bytes);
+        return new TransferReport(imported, skipped[0], bytes);
+    }
+
+    private long writeCsv(Iterator<Book> books, OutputStream out) throws IOException {
+        long written = 0;
+        try (SequenceWriter writer = csvMapper.writer(csvSchema)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValues(out)) {
+            while (books.hasNext()) {
+                writer.write(books.next());
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Пишет книги в формате JSON Lines: один объект в строке, поля пишутся генератором напрямую.
+     */
+    private long writeJsonLines(Iterator<Book> books, OutputStream out) throws IOException {
+        long written = 0;
+        try (JsonGenerator generator = jsonMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            while (books.hasNext()) {
+                Book book = books.next();
+                generator.writeStartObject();
+                generator.writeNumberField("id", book.getId());
+                generator.writeStringField("title", book.getTitle());
+                generator.writeStringField("author", book.getAuthor());
+                generator.writeStringField("description", book.getDescription());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private OutputStream output(Path target, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(target);
+        if (!gzip) {
+            return new BufferedOutputStream(out, bufferSize);
+        }
+        return new GZIPOutputStream(out, bufferSize) {
+            {
+                def.setLevel(compressionLevel);
+            }
+        };
+    }
+
+    private InputStream input(Path source) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(source), bufferSize);
+        in.mark(2);
+        int magic = in.read() | in.read() << 8;
+        in.reset();
+        return magic == GZIP_MAGIC
+                ? new BufferedInputStream(new GZIPInputStream(in, bufferSize), bufferSize)
+                : in;
+    }
+
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    private static String stripGzip(String name) {
+        return name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+    }
+
+    /**
+     * Пропускает записи, которые не удалось разобрать, и считает их в {@code skipped[0]}.
+     * Если сломан сам поток, например в JSON не закрыт объект, следующую запись найти нельзя,
+     * поэтому загрузка останавливается с {@link UncheckedIOException}.
+     */
+    private static Iterator<Book> skippingErrors(MappingIterator<Book> records, long[] skipped) {
+        return new Iterator<>() {
+            private Book next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && hasRecord()) {
+                    try {
+                        next = records.next();
+                    } catch (RuntimeException e) {
+                        skipped[0]++;
+                        System.err.println("Error deserializing book: " + e.getMessage());
+                    }
+                }
+                return next != null;
+            }
+
+            private boolean hasRecord() {
+                try {
+                    return records.hasNext();
+                } catch (RuntimeException e) {
+                    IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getMessage(), e);
+                    throw new UncheckedIOException("Error importing books: " + e.getMessage(), cause);
+                }
+            }
+
+            @Override
+            public Book next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Book book = next;
+                next = null;
+                return book;
+            }
+        };
+    }
+
+    private static Iterator<Book> filtered(Iterator<Book> books, Predicate<Book> filter) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(books, Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .filter(filter)
+                .iterator();
+    }
+}
@@ -3,42 +3,92 @@ package org.example.utils;
 import lombok.RequiredArgsConstructor;
 import org.example.model.Book;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.MessageSource;
 import org.springframework.stereotype.Component;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
+/**
+ * Вывод списка книг в консоль.
+ * Подписи полей с цветом берутся готовыми из {@link MessageCatalog}, строки собираются
+ * в один буфер и выводятся в System.out пачками по {@code listing.batchSize} символов,
+ * а не отдельным println на каждую книгу.
+ * В режиме {@code listing.mode=quiet} выводится только количество книг.
+ */
 @Component
 @RequiredArgsConstructor
 public class BookUtils {
 
-    @Value("${color.reset}")
-    private  String reset;
+    @Value("${listing.mode:full}")
+    private String mode;
 
-    @Value("${color.listing}")
-    private String listing;
+    @Value("${listing.batchSize:65536}")
+    private int batchSize;
+
+    private final MessageCatalog messageCatalog;
 
     /**
      * Выводит список всех книг.
      *
      * @param books список книг для вывода.
-     * @param messageSource источник сообщений для интернационализации.
      * @param currentLocale текущая локаль.
      */
-    public void listBooks(List<Book> books, MessageSource messageSource, Locale currentLocale) {
-        if (books.isEmpty()) {
-            System.out.println(messageSource.getMessage("service.listBook", null, currentLocale));
-        } else {
-            for (Book book : books) {
-                System.out.println(
-                        listing + messageSource.getMessage("book.id", null, currentLocale) + ": " + reset + book.getId() + ", " +
-                                listing + messageSource.getMessage("book.title", null, currentLocale) + ": " + reset + book.getTitle() + ", " +
-                                listing + messageSource.getMessage("book.author", null, currentLocale) + ": " + reset + book.getAuthor() + ", " +
-                                listing + messageSource.getMessage("book.description", null, currentLocale) + ": " + reset + book.getDescription()
-                );
+    public void listBooks(List<Book> books, Locale currentLocale) {
+        listBooks(books.iterator(), currentLocale);
+    }
+
+    /**
+     * Выводит книги по мере обхода, не собирая их в список.
+     *
+     * @param books книги для вывода.
+     * @param currentLocale текущая локаль.
+     * @return количество выведенных книг.
+     */
+    public long listBooks(Iterator<Book> books, Locale currentLocale) {
+        MessageCatalog.Messages messages = messageCatalog.of(currentLocale);
+        if (!books.hasNext()) {
+            System.out.println(messages.get(MessageKey.SERVICE_LIST_BOOK));
+            return 0;
+        }
+        long count = 0;
+        if (isQuiet()) {
+            while (books.hasNext()) {
+                books.next();
+                count++;
             }
+            System.out.println(messages.format(MessageKey.SERVICE_BOOK_COUNT, count));
+            return count;
         }
+
+        String idLabel = messages.label(MessageKey.BOOK_ID);
+        String titleLabel = messages.label(MessageKey.BOOK_TITLE);
+        String authorLabel = messages.label(MessageKey.BOOK_AUTHOR);
+        String descriptionLabel = messages.label(MessageKey.BOOK_DESCRIPTION);
+        String lineSeparator = System.lineSeparator();
+        StringBuilder buffer = new StringBuilder(Math.min(batchSize, 1 << 16) + 1024);
+        while (books.hasNext()) {
+            Book book = books.next();
+            buffer.append(idLabel).append(book.getId()).append(", ")
+                    .append(titleLabel).append(book.getTitle()).append(", ")
+                    .append(authorLabel).append(book.getAuthor()).append(", ")
+                    .append(descriptionLabel).append(book.getDescription())
+                    .append(lineSeparator);
+            count++;
+            if (buffer.length() >= batchSize) {
+                System.out.print(buffer);
+                buffer.setLength(0);
+            }
+        }
+        System.out.print(buffer);
+        System.out.flush();
+        return count;
     }
-}
 
+    /**
+     * Проверяет, выводится ли вместо списка только количество книг.
+     */
+    public boolean isQuiet() {
+        return "quiet".equals(mode);
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.context.NoSuchMessageException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Каталог сообщений, собранный один раз при запуске.
+ * <p>
+ * Для каждой локали из {@code messages.locales} все сообщения {@link MessageKey} один раз читаются
+ * из {@link MessageSource} в неизменяемый массив по порядковому номеру ключа. Рядом хранятся
+ * готовые цветные варианты с кодами из {@code color.properties}: ошибка, текст меню и подпись поля книги.
+ * Поэтому вывод сообщения - обращение к массиву, без поиска в ResourceBundle и разбора MessageFormat.
+ * Если сообщения для какой-то локали нет, каталог не создается.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageCatalog {
+
+    private final MessageSource messageSource;
+
+    @Value("${messages.locales:ru,en}")
+    private String supportedLocales;
+
+    @Value("${color.error}")
+    private String error;
+
+    @Value("${color.reset}")
+    private String reset;
+
+    @Value("${color.text}")
+    private String text;
+
+    @Value("${color.listing}")
+    private String listing;
+
+    private Messages[] messages;
+
+    @PostConstruct
+    public void init() {
+        List<Messages> loaded = new ArrayList<>();
+        for (String tag : supportedLocales.split(",")) {
+            if (!tag.isBlank()) {
+                loaded.add(load(Locale.forLanguageTag(tag.trim())));
+            }
+        }
+        if (loaded.isEmpty()) {
+            throw new IllegalStateException("No message locales configured in messages.locales");
+        }
+        messages = loaded.toArray(new Messages[0]);
+    }
+
+    /**
+     * Возвращает сообщения для языка локали. Для неподдерживаемого языка возвращаются сообщения
+     * языка системы, а если и он не поддерживается - первой локали из {@code messages.locales}.
+     *
+     * @param locale локаль языка, установленная пользователем.
+     */
+    public Messages of(Locale locale) {
+        Messages found = find(locale.getLanguage());
+        if (found == null) {
+            found = find(Locale.getDefault().getLanguage());
+        }
+        return found == null ? messages[0] : found;
+    }
+
+    /**
+     * Возвращает сообщение без цвета.
+     */
+    public String get(MessageKey key, Locale locale) {
+        return of(locale).get(key);
+    }
+
+    /**
+     * Возвращает сообщение, выделенное цветом ошибки.
+     */
+    public String error(MessageKey key, Locale locale) {
+        return of(locale).error(key);
+    }
+
+    /**
+     * Возвращает сообщение с подробностями, выделенное цветом ошибки.
+     */
+    public String error(MessageKey key, Object detail, Locale locale) {
+        return of(locale).error(key, detail);
+    }
+
+    /**
+     * Возвращает сообщение, выделенное цветом текста меню.
+     */
+    public String text(MessageKey key, Locale locale) {
+        return of(locale).text(key);
+    }
+
+    private Messages find(String language) {
+        for (Messages candidate : messages) {
+            if (candidate.language.equals(language)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private Messages load(Locale locale) {
+        MessageKey[] keys = MessageKey.values();
+        String[] plain = new String[keys.length];
+        String[] errors = new String[keys.length];
+        String[] texts = new String[keys.length];
+        String[] labels = new String[keys.length];
+        for (MessageKey key : keys) {
+            String message;
+            try {
+                message = messageSource.getMessage(key.getCode(), null, locale);
+            } catch (NoSuchMessageException e) {
+                throw new IllegalStateException("Message " + key.getCode() + " is missing for locale " + locale, e);
+            }
+            int index = key.ordinal();
+            plain[index] = message;
+            errors[index] = error + message + reset;
+            texts[index] = text + message + reset;
+            labels[index] = listing + message + ": " + reset;
+        }
+        return new Messages(locale, plain, errors, texts, labels, error, text, reset);
+    }
+
+    /**
+     * Сообщения одной локали. Объект неизменяемый, его можно хранить и использовать из многих потоков.
+     */
+    public static final class Messages {
+        private final Locale locale;
+        private final String language;
+        private final String[] plain;
+        private final String[] errors;
+        private final String[] texts;
+        private final String[] labels;
+        private final String errorColor;
+        private final String textColor;
+        private final String reset;
+
+        private Messages(Locale locale, String[] plain, String[] errors, String[] texts, String[] labels,
+                         String errorColor, String textColor, String reset) {
+            this.locale = locale;
+            this.language = locale.getLanguage();
+            this.plain = plain;
+            this.errors = errors;
+            this.texts = texts;
+            this.labels = labels;
+            this.errorColor = errorColor;
+            this.textColor = textColor;
+            this.reset = reset;
+        }
+
+        /**
+         * Возвращает сообщение без цвета.
+         */
+        public String get(MessageKey key) {
+            return plain[key.ordinal()];
+        }
+
+        /**
+         * Возвращает сообщение, выделенное цветом ошибки ({@code color.error}).
+         */
+        public String error(MessageKey key) {
+            return errors[key.ordinal()];
+        }
+
+        /**
+         * Возвращает сообщение с подробностями через пробел, выделенное цветом ошибки ({@code color.error}).
+         *
+         * @param detail подробности, например текст исключения или количество.
+         */
+        public String error(MessageKey key, Object detail) {
+            return errorColor + plain[key.ordinal()] + " " + detail + reset;
+        }
+
+        /**
+         * Возвращает сообщение, выделенное цветом текста меню ({@code color.text}).
+         */
+        public String text(MessageKey key) {
+            return texts[key.ordinal()];
+        }
+
+        /**
+         * Возвращает меню: строки сообщений в цвете текста меню ({@code color.text}).
+         * Код цвета и его сброс занимают отдельные строки до и после пунктов меню.
+         */
+        public String menu(MessageKey... keys) {
+            StringBuilder menu = new StringBuilder(textColor).append(System.lineSeparator());
+            for (MessageKey key : keys) {
+                menu.append(plain[key.ordinal()]).append(System.lineSeparator());
+            }
+            return menu.append(reset).toString();
+        }
+
+        /**
+         * Возвращает подпись поля книги для списка: цвет {@code color.listing}, сообщение и двоеточие.
+         */
+        public String label(MessageKey key) {
+            return labels[key.ordinal()];
+        }
+
+        /**
+         * Подставляет аргументы в сообщение по правилам {@link MessageFormat}.
+         * Разбирает шаблон при каждом вызове, поэтому нужен только для сообщений с аргументами.
+         */
+        public String format(MessageKey key, Object... arguments) {
+            return new MessageFormat(plain[key.ordinal()], locale).format(arguments);
+        }
+    }
+}
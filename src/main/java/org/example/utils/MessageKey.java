@@ -0,0 +1,91 @@
+package org.example.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ключи сообщений из {@code messages_*.properties} и {@code errors_*.properties}.
+ * Порядковый номер ключа - индекс сообщения в массивах {@link MessageCatalog},
+ * поэтому получение сообщения - обращение к массиву, а не поиск в ResourceBundle.
+ * При добавлении сообщения в файлы ресурсов сюда добавляется ключ: если для какой-то локали
+ * сообщения нет, каталог не создается и приложение не запускается.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MessageKey {
+    // Меню
+    MENU_LANGUAGE("menu.language"),
+    MENU_OPTION1("menu.option1"),
+    MENU_OPTION2("menu.option2"),
+    MENU_EXIT("menu.exit"),
+    MENU_ACTION("menu.action"),
+    MENU_LIST_BOOKS("menu.listBooks"),
+    MENU_FIND_BOOK("menu.findBook"),
+    MENU_CREATE_BOOK("menu.createBook"),
+    MENU_EDIT_BOOK("menu.editBook"),
+    MENU_DELETE_BOOK("menu.deleteBook"),
+    MENU_SEARCH_BOOKS("menu.searchBooks"),
+    MENU_STATISTICS("menu.statistics"),
+    MENU_FIND_BY_AUTHOR("menu.findByAuthor"),
+    MENU_EXPORT_BOOKS("menu.exportBooks"),
+    MENU_IMPORT_BOOKS("menu.importBooks"),
+    MENU_EXIT_ACTION("menu.exitAction"),
+    MENU_NEXT_PAGE("menu.nextPage"),
+    MENU_DUMP_STATISTICS("menu.dumpStatistics"),
+    MENU_STATISTICS_SAVED("menu.statisticsSaved"),
+    MENU_TRANSFER_FILE("menu.transferFile"),
+    MENU_TRANSFER_TITLE("menu.transferTitle"),
+    MENU_TRANSFER_AUTHOR("menu.transferAuthor"),
+    MENU_EXPORTED("menu.exported"),
+    MENU_IMPORTED("menu.imported"),
+    MENU_SKIPPED("menu.skipped"),
+    MENU_EXIT_MESSAGE("menu.exitMessage"),
+    MENU_INVALID("menu.invalid"),
+    MENU_NOT_NUMBER("menu.notNumber"),
+    MENU_STATISTICS_WRITE_ERROR("menu.statisticsWriteError"),
+    MENU_TRANSFER_ERROR("menu.transferError"),
+    MENU_TRANSFER_FORMAT("menu.transferFormat"),
+
+    // Ввод данных о книгах
+    HANDLER_READ_ADD_ID("handler.readAddId"),
+    HANDLER_READ_ADD_TITLE("handler.readAddTitle"),
+    HANDLER_READ_ADD_AUTHOR("handler.readAddAuthor"),
+    HANDLER_READ_ADD_DESCRIPTION("handler.readAddDescription"),
+    HANDLER_READ_NEW_ID("handler.readNewId"),
+    HANDLER_READ_NEW_TITLE("handler.readNewTitle"),
+    HANDLER_READ_NEW_AUTHOR("handler.readNewAuthor"),
+    HANDLER_READ_NEW_DESCRIPTION("handler.readNewDescription"),
+    HANDLER_READ_DELETE_ID("handler.readDeleteId"),
+    HANDLER_READ_SEARCH_QUERY("handler.readSearchQuery"),
+    HANDLER_INVALID_ID("handler.invalidId"),
+    HANDLER_NOT_NUMBER("handler.notNumber"),
+
+    // Результаты операций с книгами
+    SERVICE_ADD_BOOK("service.addBook"),
+    SERVICE_LIST_BOOK("service.listBook"),
+    SERVICE_BOOK_COUNT("service.bookCount"),
+    SERVICE_EDIT_BOOK("service.editBook"),
+    SERVICE_DELETE_BOOK("service.deleteBook"),
+    SERVICE_NOT_FOUND_BOOK_BY_ID("service.notFoundBookById"),
+    SERVICE_FILE_WRITE_ERROR("service.fileWriteError"),
+    SERVICE_DUPLICATE_ID("service.duplicateId"),
+    SERVICE_VERSION_CONFLICT("service.versionConflict"),
+
+    // Подписи полей книги
+    BOOK_ID("book.id"),
+    BOOK_TITLE("book.title"),
+    BOOK_AUTHOR("book.author"),
+    BOOK_DESCRIPTION("book.description"),
+
+    // Сервер команд
+    SERVER_BUSY("server.busy"),
+    SERVER_UNKNOWN_COMMAND("server.unknownCommand"),
+    SERVER_BATCH_TOO_LARGE("server.batchTooLarge"),
+    SERVER_INTERNAL_ERROR("server.internalError"),
+    SERVER_LINE_TOO_LONG("server.lineTooLong");
+
+    /**
+     * Ключ сообщения в файлах ресурсов.
+     */
+    private final String code;
+}
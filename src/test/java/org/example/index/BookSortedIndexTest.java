@@ -0,0 +1,104 @@
+package org.example.index;
+
+import org.example.model.Book;
+import org.example.repository.TestCatalog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class BookSortedIndexTest {
+
+    private static final String[] AUTHORS = {"Толстой Л.Н.", "толстой л.н.", " Пушкин ", "Алёшин", "Алешин", "Chekhov"};
+    private static final int INITIAL = 500;
+    private static final int LIMIT = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergedBatchMatchesPerBookChanges() throws IOException {
+        Random random = new Random(42);
+        Map<Integer, Book> state = new TreeMap<>();
+        for (int id = 0; id < INITIAL; id++) {
+            state.put(id, book(id, random));
+        }
+        List<Book> initial = new ArrayList<>(state.values());
+
+        // пакет больше порога слияния: добавления, смена автора, удаления и несколько изменений одной книги
+        List<Book> previous = new ArrayList<>();
+        List<Book> current = new ArrayList<>();
+        int nextId = INITIAL;
+        for (int i = 0; i < 400; i++) {
+            int op = random.nextInt(4);
+            int id = op == 0 ? nextId++ : random.nextInt(nextId);
+            Book before = state.get(id);
+            Book after = op == 3 && before != null ? null : book(id, random);
+            if (before == null && after == null) {
+                continue;
+            }
+            previous.add(before);
+            current.add(after);
+            if (after == null) {
+                state.remove(id);
+            } else {
+                state.put(id, after);
+            }
+        }
+
+        // в репозитории есть все книги, побывавшие в каталоге, поэтому лишний ID в индексе попадет в ответ
+        List<String> rows = new ArrayList<>();
+        for (int id = 0; id < nextId; id++) {
+            String author = state.containsKey(id) ? state.get(id).getAuthor() : "Deleted";
+            rows.add(id + ",Title " + id + "," + author + ",Description");
+        }
+        Path file = TestCatalog.writeCsv(folder.getRoot().toPath().resolve("books.csv"), rows.toArray(new String[0]));
+        try (TestCatalog catalog = new TestCatalog(file, "storage.journal.enabled", "false")) {
+            BookSortedIndex merged = new BookSortedIndex(catalog.repository());
+            merged.onReload(initial);
+            merged.onBatch(previous, current);
+
+            BookSortedIndex perBook = new BookSortedIndex(catalog.repository());
+            perBook.onReload(initial);
+            for (int i = 0; i < current.size(); i++) {
+                if (current.get(i) == null) {
+                    perBook.onDelete(previous.get(i));
+                } else {
+                    perBook.onUpsert(previous.get(i), current.get(i));
+                }
+            }
+
+            String expectedIds = Arrays.toString(state.keySet().stream().mapToInt(Integer::intValue).toArray());
+            assertEquals(expectedIds, ids(merged.sorted(BookSortedIndex.SortOrder.ID, LIMIT)));
+            assertEquals(expectedIds, ids(perBook.sorted(BookSortedIndex.SortOrder.ID, LIMIT)));
+            for (String author : AUTHORS) {
+                String expected = Arrays.toString(state.values().stream()
+                        .filter(book -> BookSortedIndex.fold(book.getAuthor()).equals(BookSortedIndex.fold(author)))
+                        .mapToInt(Book::getId)
+                        .toArray());
+                assertEquals(author, expected, ids(merged.findByAuthor(author, LIMIT)));
+                assertEquals(author, expected, ids(perBook.findByAuthor(author, LIMIT)));
+            }
+            assertEquals(ids(perBook.sorted(BookSortedIndex.SortOrder.AUTHOR, LIMIT)),
+                    ids(merged.sorted(BookSortedIndex.SortOrder.AUTHOR, LIMIT)));
+        }
+    }
+
+    private static Book book(int id, Random random) {
+        return new Book(id, "Title " + id, AUTHORS[random.nextInt(AUTHORS.length)], "Description");
+    }
+
+    private static String ids(List<Book> books) {
+        return Arrays.toString(books.stream().mapToInt(Book::getId).toArray());
+    }
+}
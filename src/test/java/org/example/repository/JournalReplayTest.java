@@ -0,0 +1,98 @@
+package org.example.repository;
+
+import org.example.model.Book;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JournalReplayTest {
+
+    private static final String[] JOURNAL = {
+            "storage.journal.enabled", "true",
+            "storage.journal.compactionIntervalSeconds", "3600",
+            "storage.journal.compactionThreshold", "1000000"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changesAreReplayedAfterCrash() throws IOException {
+        Path crashed = crashAfterChanges();
+
+        try (TestCatalog catalog = new TestCatalog(crashed.resolve("books.csv"), JOURNAL)) {
+            assertReplayed(catalog.repository());
+        }
+    }
+
+    @Test
+    public void tornLastRecordIsDroppedAndJournalStaysWritable() throws IOException {
+        Path crashed = crashAfterChanges();
+        Path journal = crashed.resolve("books.csv.log");
+        // запись оборвалась посреди поля в кавычках
+        Files.write(journal, "U,99,\"Unfinished".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (TestCatalog catalog = new TestCatalog(crashed.resolve("books.csv"), JOURNAL)) {
+            BookRepository repository = catalog.repository();
+            assertReplayed(repository);
+            assertNull(repository.findBookById(99));
+            repository.addBook(new Book(7, "Seventh", "Author", "After recovery"));
+        }
+        try (TestCatalog catalog = new TestCatalog(crashed.resolve("books.csv"), JOURNAL)) {
+            BookRepository repository = catalog.repository();
+            assertReplayed(repository);
+            assertEquals("After recovery", repository.findBookById(7).getDescription());
+        }
+    }
+
+    /**
+     * Вносит изменения одиночными и пакетными вызовами и копирует файлы каталога, пока репозиторий открыт:
+     * копия - это состояние диска при сбое процесса, до сжатия журнала и закрытия файлов.
+     *
+     * @return каталог с копией файлов.
+     */
+    private Path crashAfterChanges() throws IOException {
+        Path live = folder.newFolder("live").toPath();
+        Path crashed = folder.newFolder("crashed").toPath();
+        TestCatalog.writeCsv(live.resolve("books.csv"),
+                "1,First,Author,Description", "2,Second,Author,Description", "3,Third,Author,Description");
+        try (TestCatalog catalog = new TestCatalog(live.resolve("books.csv"), JOURNAL)) {
+            BookRepository repository = catalog.repository();
+            repository.addBook(new Book(4, "Fourth", "Author", "Description"));
+            repository.editBook(new Book(1, "First v2", "Author", "Description"));
+            repository.deleteBook(2);
+            repository.addBooks(List.of(new Book(5, "Fifth", "Author", "Description"),
+                    new Book(6, "Sixth", "Author", "Description")));
+            repository.editBooks(List.of(new Book(5, "Fifth v2", "Author", "Description")));
+            repository.deleteBooks(new int[]{3});
+
+            try (var files = Files.list(live)) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+        }
+        assertTrue("changes must still be in the journal", Files.size(crashed.resolve("books.csv.log")) > 0);
+        return crashed;
+    }
+
+    private static void assertReplayed(BookRepository repository) {
+        assertEquals("First v2", repository.findBookById(1).getTitle());
+        assertNull(repository.findBookById(2));
+        assertNull(repository.findBookById(3));
+        assertEquals("Fourth", repository.findBookById(4).getTitle());
+        assertEquals("Fifth v2", repository.findBookById(5).getTitle());
+        assertEquals("Sixth", repository.findBookById(6).getTitle());
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.repository;
+
+import org.example.model.Book;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelCsvImporterTest {
+
+    /**
+     * Файлы меньше 16 МБ при четырех потоках делятся на диапазоны ровно по 1 МБ.
+     */
+    private static final int CHUNK = 1 << 20;
+    private static final int ROWS = 100_000;
+    private static final String MULTILINE = "\"line one, with \"\"quotes\"\"\nline two\n\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void quotedNewlinesAcrossChunkBoundaries() throws IOException {
+        Path file = write(-1);
+
+        ParallelCsvImporter.ImportReport report = new ParallelCsvImporter(4).importFile(file);
+
+        assertTrue(report.getErrors().isEmpty());
+        assertEquals(ROWS, report.getBooks().size());
+        for (int i = 0; i < ROWS; i++) {
+            Book book = report.getBooks().get(i);
+            assertEquals(i + 1, book.getId());
+            assertEquals("title " + (i + 1), book.getTitle());
+        }
+        assertMatchesSequential(file, report);
+    }
+
+    @Test
+    public void strayQuoteBeforeQuotedNewlines() throws IOException {
+        // кавычка в поле без кавычек меняет четность для всех следующих диапазонов
+        Path file = write(10);
+
+        assertMatchesSequential(file, new ParallelCsvImporter(4).importFile(file));
+    }
+
+    @Test
+    public void strayQuoteInTheMiddleOfTheFile() throws IOException {
+        Path file = write(ROWS / 2);
+
+        assertMatchesSequential(file, new ParallelCsvImporter(4).importFile(file));
+    }
+
+    /**
+     * Пишет файл, где каждую границу диапазона пересекает описание в кавычках с переводами строк
+     * и экранированными кавычками, а каждое седьмое описание тоже многострочное.
+     *
+     * @param strayRow строка с кавычкой внутри поля без кавычек или -1.
+     */
+    private Path write(int strayRow) throws IOException {
+        StringBuilder csv = new StringBuilder(TestCatalog.HEADER);
+        long nextBoundary = CHUNK;
+        for (int id = 1; id <= ROWS; id++) {
+            String title = id == strayRow ? "ab\"c" : "title " + id;
+            String description;
+            if (nextBoundary - csv.length() < 400) {
+                // описание длиннее оставшихся байтов, граница попадает внутрь кавычек
+                description = "\"" + "crossing \"\"boundary\"\"\n".repeat(40) + "\"";
+                nextBoundary += CHUNK;
+            } else {
+                description = id % 7 == 0 ? MULTILINE : "plain description";
+            }
+            csv.append(id).append(',').append(title).append(",author ").append(id % 50).append(',')
+                    .append(description).append('\n');
+        }
+        Path file = folder.getRoot().toPath().resolve("books.csv");
+        Files.writeString(file, csv, StandardCharsets.US_ASCII);
+        assertTrue("file must span several chunks", Files.size(file) > 4L * CHUNK);
+        return file;
+    }
+
+    private static void assertMatchesSequential(Path file, ParallelCsvImporter.ImportReport report) throws IOException {
+        List<Book> expected = new ArrayList<>();
+        int[] errors = new int[1];
+        try (MappedCsvReader reader = new MappedCsvReader(file)) {
+            reader.forEach(true, record -> {
+                try {
+                    expected.add(BookRepository.toBook(record, BookInterner.NONE));
+                } catch (RuntimeException e) {
+                    errors[0]++;
+                }
+            });
+        }
+        assertEquals(errors[0], report.getErrors().size());
+        assertEquals(expected.size(), report.getBooks().size());
+        for (int i = 0; i < expected.size(); i++) {
+            Book book = report.getBooks().get(i);
+            assertEquals(expected.get(i).getId(), book.getId());
+            assertEquals(expected.get(i).getTitle(), book.getTitle());
+            assertEquals(expected.get(i).getDescription(), book.getDescription());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.repository;
+
+import org.example.model.Book;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotRecoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void editOfSealedSnapshotSurvivesReloadWithJournal() throws IOException {
+        editOfSealedSnapshotSurvivesReload("true");
+    }
+
+    @Test
+    public void editOfSealedSnapshotSurvivesReloadWithoutJournal() throws IOException {
+        editOfSealedSnapshotSurvivesReload("false");
+    }
+
+    @Test
+    public void truncatedSnapshotIsRestoredFromPreviousGeneration() throws IOException {
+        Path file = TestCatalog.writeCsv(folder.getRoot().toPath().resolve("books.csv"),
+                "1,First,Author,Description", "2,Second,Author,Description", "3,Third,Author,Description");
+        try (TestCatalog catalog = new TestCatalog(file, "storage.journal.enabled", "false")) {
+            BookRepository repository = catalog.repository();
+            repository.editBook(new Book(2, "Second v2", "Author", "Description"));
+            repository.editBook(new Book(2, "Second v3", "Author", "Description"));
+        }
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(file).getStatus());
+
+        // обрываем файл посередине, оставляя трейлер: часть запечатанных байтов пропала
+        String content = Files.readString(file);
+        int cut = content.indexOf("3,Third");
+        Files.writeString(file, content.substring(0, cut) + content.substring(content.indexOf("#books")));
+        assertEquals(SnapshotFile.Status.CORRUPTED, SnapshotFile.verify(file).getStatus());
+
+        try (TestCatalog catalog = new TestCatalog(file, "storage.journal.enabled", "false")) {
+            BookRepository repository = catalog.repository();
+            assertEquals(3, repository.readBooks().size());
+            assertEquals("Second v2", repository.findBookById(2).getTitle());
+        }
+        assertTrue(Files.exists(file.resolveSibling("books.csv.corrupt")));
+        assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(file).getStatus());
+    }
+
+    @Test
+    public void zeroFilledPagesAreCorruption() throws IOException {
+        Path file = TestCatalog.writeCsv(folder.getRoot().toPath().resolve("books.csv"),
+                "1,First,Author,Description", "2,Second,Author,Description");
+        SnapshotFile.seal(file, 2, false);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(TestCatalog.HEADER.length());
+            raf.write(new byte[8]);
+        }
+        assertEquals(SnapshotFile.Status.CORRUPTED, SnapshotFile.verify(file).getStatus());
+    }
+
+    private void editOfSealedSnapshotSurvivesReload(String journal) throws IOException {
+        Path file = TestCatalog.writeCsv(folder.getRoot().toPath().resolve("books.csv"),
+                "1,First,Author,Description", "2,Second,Author,Description", "3,Third,Author,Description");
+        try (TestCatalog catalog = new TestCatalog(file, "storage.journal.enabled", journal)) {
+            BookRepository repository = catalog.repository();
+            repository.editBook(new Book(1, "First v2", "Author", "Description"));
+            repository.compact();
+            assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(file).getStatus());
+
+            // правка извне с сохранением трейлера: сумма больше не совпадает, но файл целый
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            Files.writeString(file, content.replace("2,Second,", "2,Edited outside,"), StandardCharsets.UTF_8);
+            assertTrue(file.toFile().setLastModified(file.toFile().lastModified() + 2000));
+            assertEquals(SnapshotFile.Status.UNSEALED, SnapshotFile.verify(file).getStatus());
+
+            repository.refreshIfModified();
+            assertEquals("Edited outside", repository.findBookById(2).getTitle());
+            assertEquals("First v2", repository.findBookById(1).getTitle());
+            assertFalse(Files.exists(file.resolveSibling("books.csv.corrupt")));
+
+            // следующая запись снимка запечатывает файл заново
+            repository.editBook(new Book(3, "Third v2", "Author", "Description"));
+            repository.compact();
+            assertEquals(SnapshotFile.Status.VALID, SnapshotFile.verify(file).getStatus());
+        }
+        try (TestCatalog catalog = new TestCatalog(file, "storage.journal.enabled", journal)) {
+            BookRepository repository = catalog.repository();
+            assertEquals("Edited outside", repository.findBookById(2).getTitle());
+            assertEquals("Third v2", repository.findBookById(3).getTitle());
+        }
+        assertFalse(Files.exists(file.resolveSibling("books.csv.corrupt")));
+    }
+}
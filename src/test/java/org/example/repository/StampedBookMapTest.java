@@ -0,0 +1,106 @@
+package org.example.repository;
+
+import org.example.model.Book;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StampedBookMapTest {
+
+    private static final int BOOKS = 2_000;
+    private static final int WRITES = 200_000;
+
+    @Test
+    public void putStoresVersionedCopy() {
+        StampedBookMap books = new StampedBookMap();
+        Book book = new Book(1, "Title", "Author", "Description");
+        assertNull(books.put(book));
+        Book stored = books.get(1);
+
+        assertEquals(0, book.getVersion());
+        assertNotEquals(0, stored.getVersion());
+        assertEquals("Title", stored.getTitle());
+        book.setTitle("Changed by caller");
+        assertEquals("Title", books.get(1).getTitle());
+
+        Book previous = books.put(new Book(1, "Title 2", "Author", "Description"));
+        assertSame(stored, previous);
+        assertTrue(books.get(1).getVersion() > stored.getVersion());
+    }
+
+    @Test
+    public void concurrentStreamOnHeap() throws InterruptedException {
+        concurrentPutAndStream(IntBookMap::new);
+    }
+
+    @Test
+    public void concurrentStreamOffHeap() throws InterruptedException {
+        // маленькие сегменты, чтобы во время обходов часто перестраивалась и карта, и память вне кучи
+        concurrentPutAndStream(() -> new OffHeapBookMap(16, 1 << 16, BookInterner.NONE));
+    }
+
+    /**
+     * Писатель добавляет, меняет и удаляет книги, пока читатели обходят поток.
+     * У каждой книги название и описание согласованы, поэтому разорванная запись будет видна.
+     */
+    private void concurrentPutAndStream(Supplier<BookMap> engine) throws InterruptedException {
+        StampedBookMap books = new StampedBookMap(engine.get());
+        for (int id = 0; id < BOOKS; id++) {
+            books.put(book(id, 0));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        books.stream().forEach(StampedBookMapTest::checkConsistent);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 1; i <= WRITES && failure.get() == null; i++) {
+            int id = i % BOOKS;
+            if (i % 7 == 0) {
+                books.remove(id);
+            } else {
+                books.put(book(id, i));
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Stream failed during concurrent writes", failure.get());
+        }
+        books.stream().forEach(StampedBookMapTest::checkConsistent);
+        assertEquals(books.size(), books.stream().count());
+    }
+
+    private static Book book(int id, int revision) {
+        String text = id + "-" + revision + "-" + "x".repeat(revision % 50);
+        return new Book(id, text, "Author " + id % 10, text);
+    }
+
+    private static void checkConsistent(Book book) {
+        if (!book.getTitle().equals(book.getDescription()) || !book.getTitle().startsWith(book.getId() + "-")) {
+            throw new AssertionError("Torn book " + book.getId() + ": " + book.getTitle() + " / " + book.getDescription());
+        }
+    }
+}
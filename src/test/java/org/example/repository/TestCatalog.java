@@ -0,0 +1,67 @@
+package org.example.repository;
+
+import org.example.config.AppConfig;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Контекст приложения над CSV файлом во временном каталоге для тестов репозитория.
+ * Настройки передаются системными свойствами и снимаются при закрытии.
+ */
+public class TestCatalog implements AutoCloseable {
+
+    public static final String HEADER = "id,title,author,description\n";
+
+    private final Map<String, String> properties = new LinkedHashMap<>();
+    private final AnnotationConfigApplicationContext context;
+
+    /**
+     * @param file       файл снимка.
+     * @param properties пары ключ-значение, например {@code "storage.journal.enabled", "false"}.
+     */
+    public TestCatalog(Path file, String... properties) {
+        this.properties.put("storage.file", file.toString());
+        this.properties.put("storage.watch.enabled", "false");
+        this.properties.put("tracing.enabled", "false");
+        for (int i = 0; i + 1 < properties.length; i += 2) {
+            this.properties.put(properties[i], properties[i + 1]);
+        }
+        this.properties.forEach(System::setProperty);
+        this.context = new AnnotationConfigApplicationContext(AppConfig.class);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public BookRepository repository() {
+        return bean(BookRepository.class);
+    }
+
+    /**
+     * Записывает CSV файл с заголовком и строками {@code id,title,author,description}.
+     */
+    public static Path writeCsv(Path file, String... rows) throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (String row : rows) {
+            csv.append(row).append('\n');
+        }
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            context.close();
+        } finally {
+            properties.keySet().forEach(System::clearProperty);
+        }
+    }
+}